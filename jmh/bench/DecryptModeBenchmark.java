@@ -0,0 +1,93 @@
+package bench;
+
+import it.unisa.dia.gas.jpbc.Element;
+import kpabe.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 比较三种解密方式随叶子数的变化：
+ *   recursive：原始的递归解密，密文中出现的每个叶子一次配对，再由KPABE.nodeRecover逐层做GT上的拉格朗日恢复；
+ *   planned：Decryptor.decrypt，预处理Di，只为最小满足叶子集合计算配对；
+ *   multi-pairing：Decryptor.decryptMultiPairing，系数移到Di上，用一次乘积配对共享最终幂运算。
+ * 访问树为单个 n-of-n 门限门，n 个叶子分别对应属性 1..n，密文携带全部属性；访问策略在计时之外只编译一次。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class DecryptModeBenchmark {
+    @Param({"a.properties"})
+    public String params;
+
+    @Param({"5", "10", "20", "40"})
+    public int leaves;
+
+    @Param({"recursive", "planned", "multi-pairing"})
+    public String mode;
+
+    private Workloads workload;
+    private PairingBackend backend;
+    private Node[] accessTree;
+    private AccessPolicy policy;
+    private DecryptionKey key;
+    private Decryptor decryptor;
+    private Ciphertext ct;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        workload = new Workloads(params);
+        String pk = workload.tempFile("pk");
+        String msk = workload.tempFile("msk");
+        String sk = workload.tempFile("sk");
+        KPABE.setup(params, leaves, pk, msk);
+        accessTree = AccessTrees.threshold(leaves, leaves);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        backend = engine.getBackend();
+        policy = AccessPolicy.compile(accessTree);
+        key = engine.loadDecryptionKey(sk);
+        decryptor = engine.newDecryptor(key);
+        Element message = engine.getPairing().getGT().newRandomElement().getImmutable();
+        ct = engine.encrypt(message, Workloads.attributes(leaves));
+        if (!message.isEqual(decrypt())) {
+            throw new IllegalStateException("Decryption mismatch with " + leaves + " leaves in mode " + mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        workload.close();
+    }
+
+    @Benchmark
+    public Element decrypt() {
+        switch (mode) {
+            case "recursive":
+                return recursiveDecrypt();
+            case "planned":
+                return decryptor.decrypt(policy, ct);
+            case "multi-pairing":
+                return decryptor.decryptMultiPairing(policy, ct);
+            default:
+                throw new IllegalArgumentException("Unknown decryption mode " + mode);
+        }
+    }
+
+    // 原始的递归解密，会修改访问树节点的secretShare和valid
+    private Element recursiveDecrypt() {
+        for (Node node : accessTree) {
+            node.valid = false;
+            if (node.isLeaf() && ct.hasAttribute(node.att)) {
+                node.secretShare = backend.pairing(ct.E.get(node.att), key.D.get(node.att)).getImmutable();
+            }
+        }
+        if (!KPABE.nodeRecover(accessTree, accessTree[0], ct.messageAttList, backend.getPairing())) {
+            return null;
+        }
+        return ct.EP.div(accessTree[0].secretShare);
+    }
+}
@@ -0,0 +1,46 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encrypt随密文属性数变化
+ * cold：KPABE.encrypt，每次读取曲线参数和公钥文件并写出密文文件；warm：KPABEEngine.encrypt，已为全部属性建好预计算表
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class EncryptBenchmark {
+    @Param({"a.properties"})
+    public String params;
+
+    @Param({"1", "5", "10", "20"})
+    public int attributes;
+
+    @Param({"cold", "warm"})
+    public String path;
+
+    private Workloads workload;
+    private Callable<Object> op;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        workload = new Workloads(params);
+        op = workload.encrypt(attributes, "warm".equals(path));
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object encrypt() throws Exception {
+        return op.call();
+    }
+}
@@ -0,0 +1,47 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * keygen随访问树的深度、扇出和门限变化，形状记为 "深度x扇出x门限"
+ * cold：KPABE.keygen，每次读取曲线参数、公钥和主密钥文件并写出私钥文件；warm：BatchKeyGenerator.keygen，已缓存1/ti和g2的预计算表
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class KeygenBenchmark {
+    @Param({"a.properties"})
+    public String params;
+
+    @Param({"1x4x2", "1x8x8", "2x3x2", "2x4x4", "3x3x2"})
+    public String shape;
+
+    @Param({"cold", "warm"})
+    public String path;
+
+    private Workloads workload;
+    private Callable<Object> op;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        int[] s = Workloads.shape(shape);
+        workload = new Workloads(params);
+        op = workload.keygen(s[0], s[1], s[2], "warm".equals(path));
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object keygen() throws Exception {
+        return op.call();
+    }
+}
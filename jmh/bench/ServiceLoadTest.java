@@ -0,0 +1,128 @@
+package bench;
+
+import it.unisa.dia.gas.jpbc.Element;
+import kpabe.*;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * KPABEService的负载测试
+ * 多个客户端线程各自循环提交请求并等待结果（闭环），请求中约10%为密钥生成，其余一半加密一半解密；
+ * 加密从少量固定属性集中选取，解密使用预先登记的用户私钥，以便服务合并出微批次。
+ * 输出每类请求的吞吐量和p50/p99延迟（从提交到得到结果）。
+ * 不是JMH基准，与基准一起打包在jmh jar中：
+ * 用法：java -cp <jmh jar>:<jPBC jar> bench.ServiceLoadTest [曲线参数文件] [客户端线程数] [每个客户端的请求数] [工作线程数]
+ */
+public class ServiceLoadTest {
+    private static final String[] OPS = {"keygen", "encrypt", "decrypt"};
+
+    public static void main(String[] args) throws Exception {
+        String pairingParametersFileName = args.length > 0 ? args[0] : "a.properties";
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int requestsPerClient = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int workerThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+        File pk = File.createTempFile("kpabe-pk", ".properties");
+        File msk = File.createTempFile("kpabe-msk", ".properties");
+        int leaves = 6;
+        KPABE.setup(pairingParametersFileName, leaves, pk.getPath(), msk.getPath());
+        AccessPolicy policy = AccessPolicy.compile(AccessTrees.threshold(2, leaves));
+        int[][] attributeSets = {{1, 2}, {2, 3, 4}, {1, 5, 6}};
+
+        try (KPABEService service = KPABEService.open(pairingParametersFileName, pk.getPath(), msk.getPath(), workerThreads, clients * 4)) {
+            int users = 8;
+            for (int u = 0; u < users; u++) {
+                service.keygen("user" + u, policy).get();
+            }
+            Element[] messages = new Element[attributeSets.length];
+            Ciphertext[] ciphertexts = new Ciphertext[attributeSets.length];
+            for (int k = 0; k < attributeSets.length; k++) {
+                messages[k] = randomMessage(pairingParametersFileName);
+                ciphertexts[k] = service.encrypt(messages[k], attributeSets[k]).get();
+            }
+
+            long[][][] latencies = new long[clients][OPS.length][];
+            int[][] counts = new int[clients][OPS.length];
+            ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+            List<Future<?>> done = new ArrayList<Future<?>>();
+            long start = System.nanoTime();
+            for (int c = 0; c < clients; c++) {
+                int client = c;
+                done.add(clientPool.submit(() -> {
+                    Random random = new Random(client);
+                    for (int op = 0; op < OPS.length; op++) {
+                        latencies[client][op] = new long[requestsPerClient];
+                    }
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        int op = random.nextInt(10) == 0 ? 0 : 1 + random.nextInt(2);
+                        int k = random.nextInt(attributeSets.length);
+                        long t0 = System.nanoTime();
+                        try {
+                            if (op == 0) {
+                                service.keygen("client" + client + "-" + i, policy).get();
+                            }
+                            else if (op == 1) {
+                                service.encrypt(messages[k], attributeSets[k]).get();
+                            }
+                            else if (!messages[k].isEqual(service.decrypt("user" + random.nextInt(users), ciphertexts[k]).get())) {
+                                throw new IllegalStateException("Decryption mismatch");
+                            }
+                        }
+                        catch (InterruptedException | ExecutionException e) {
+                            throw new IllegalStateException(e);
+                        }
+                        latencies[client][op][counts[client][op]++] = System.nanoTime() - t0;
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : done) {
+                f.get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            clientPool.shutdown();
+
+            System.out.printf("clients=%d workers=%d requests=%d elapsed=%.2fs%n", clients, workerThreads, clients * requestsPerClient, seconds);
+            System.out.println("op\tcount\tops/s\tp50(ms)\tp99(ms)");
+            for (int op = 0; op < OPS.length; op++) {
+                long[] all = merge(latencies, counts, op);
+                Arrays.sort(all);
+                if (all.length == 0) {
+                    continue;
+                }
+                System.out.printf("%s\t%d\t%.1f\t%.3f\t%.3f%n", OPS[op], all.length, all.length / seconds,
+                        percentile(all, 50) / 1e6, percentile(all, 99) / 1e6);
+            }
+        }
+        finally {
+            pk.delete();
+            msk.delete();
+        }
+    }
+
+    private static Element randomMessage(String pairingParametersFileName) {
+        return PairingBackend.forParameters(pairingParametersFileName).getPairing().getGT().newRandomElement().getImmutable();
+    }
+
+    private static long[] merge(long[][][] latencies, int[][] counts, int op) {
+        int n = 0;
+        for (int c = 0; c < counts.length; c++) {
+            n += counts[c][op];
+        }
+        long[] all = new long[n];
+        int p = 0;
+        for (int c = 0; c < counts.length; c++) {
+            System.arraycopy(latencies[c][op], 0, all, p, counts[c][op]);
+            p += counts[c][op];
+        }
+        return all;
+    }
+
+    // 最近秩法求百分位数，sorted已升序排列
+    private static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
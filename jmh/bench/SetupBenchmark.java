@@ -0,0 +1,42 @@
+package bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * setup随属性全集U变化，只有冷路径
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SetupBenchmark {
+    @Param({"a.properties"})
+    public String params;
+
+    @Param({"10", "50", "100"})
+    public int universe;
+
+    private Workloads workload;
+    private Callable<Object> op;
+
+    @Setup(Level.Trial)
+    public void prepare() throws Exception {
+        workload = new Workloads(params);
+        op = workload.setup(universe);
+    }
+
+    @TearDown(Level.Trial)
+    public void cleanup() {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object setup() throws Exception {
+        return op.call();
+    }
+}
@@ -0,0 +1,171 @@
+package bench;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+import kpabe.*;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 基准测试的工作负载：setup、keygen、encrypt、decrypt
+ * setup随属性全集U变化，encrypt随密文属性数变化，keygen和decrypt随访问树的深度、扇出和门限变化。
+ * 冷路径调用KPABE的静态方法（每次读取曲线参数和密钥文件），热路径使用常驻内存的KPABEEngine、Decryptor和BatchKeyGenerator。
+ * 每个方法只在每轮测试开始时做一次准备工作，返回的Callable是被计时的一次操作。
+ */
+final class Workloads implements Closeable {
+    private final String params;
+    private final List<File> tempFiles = new ArrayList<File>();
+
+    /**
+     * @param params 曲线参数文件
+     */
+    Workloads(String params) {
+        this.params = params;
+    }
+
+    /**
+     * setup只有冷路径：每次都选取全部主密钥并写出公钥和主密钥文件
+     * @param U 属性全集的大小
+     * @return
+     * @throws IOException
+     */
+    Callable<Object> setup(int U) throws IOException {
+        String pk = tempFile("pk");
+        String msk = tempFile("msk");
+        return () -> {
+            KPABE.setup(params, U, pk, msk);
+            return null;
+        };
+    }
+
+    /**
+     * @param n 密文属性数，属性值为1..n
+     * @param warm
+     * @return 冷路径写出密文文件，热路径返回内存中的密文
+     * @throws IOException
+     */
+    Callable<Object> encrypt(int n, boolean warm) throws IOException {
+        String pk = tempFile("pk");
+        String msk = tempFile("msk");
+        String ct = tempFile("ct");
+        KPABE.setup(params, n, pk, msk);
+        int[] messageAttList = attributes(n);
+        Element message = randomMessage();
+        if (!warm) {
+            return () -> {
+                KPABE.encrypt(params, message, messageAttList, pk, ct);
+                return null;
+            };
+        }
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        engine.prepareAttributes(messageAttList);
+        return () -> engine.encrypt(message, messageAttList);
+    }
+
+    /**
+     * @param depth 访问树的深度
+     * @param fanout 每个内部节点的子节点数
+     * @param threshold 每个内部节点的门限
+     * @param warm
+     * @return 冷路径写出私钥文件，热路径返回内存中的私钥
+     * @throws Exception
+     */
+    Callable<Object> keygen(int depth, int fanout, int threshold, boolean warm) throws Exception {
+        String pk = tempFile("pk");
+        String msk = tempFile("msk");
+        String sk = tempFile("sk");
+        KPABE.setup(params, AccessTrees.leaves(depth, fanout), pk, msk);
+        Node[] accessTree = AccessTrees.full(depth, fanout, threshold);
+        if (!warm) {
+            return () -> {
+                KPABE.keygen(params, accessTree, pk, msk, sk);
+                return null;
+            };
+        }
+        PairingBackend backend = PairingBackend.forParameters(params);
+        Pairing bp = backend.getPairing();
+        BatchKeyGenerator generator = new BatchKeyGenerator(backend, PublicKey.load(pk, bp), MasterKey.load(msk, bp));
+        AccessPolicy policy = AccessPolicy.compile(accessTree);
+        return () -> generator.keygen(policy);
+    }
+
+    /**
+     * 密文携带全部叶子属性
+     * @param depth 访问树的深度
+     * @param fanout 每个内部节点的子节点数
+     * @param threshold 每个内部节点的门限
+     * @param warm
+     * @return 解密得到的明文
+     * @throws Exception
+     */
+    Callable<Object> decrypt(int depth, int fanout, int threshold, boolean warm) throws Exception {
+        String pk = tempFile("pk");
+        String msk = tempFile("msk");
+        String sk = tempFile("sk");
+        String ct = tempFile("ct");
+        int leaves = AccessTrees.leaves(depth, fanout);
+        KPABE.setup(params, leaves, pk, msk);
+        Node[] accessTree = AccessTrees.full(depth, fanout, threshold);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        Element message = randomMessage();
+        KPABE.encrypt(params, message, attributes(leaves), pk, ct);
+        if (!warm) {
+            return () -> KPABE.decrypt(params, accessTree, pk, ct, sk);
+        }
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        Decryptor decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+        Ciphertext ciphertext = engine.loadCiphertext(ct);
+        AccessPolicy policy = AccessPolicy.compile(accessTree);
+        if (!message.isEqual(decryptor.decrypt(policy, ciphertext))) {
+            throw new IllegalStateException("Decryption mismatch for d=" + depth + " f=" + fanout + " k=" + threshold);
+        }
+        return () -> decryptor.decrypt(policy, ciphertext);
+    }
+
+    /**
+     * 删除准备过程中写出的临时文件
+     */
+    @Override
+    public void close() {
+        for (File f : tempFiles) {
+            f.delete();
+        }
+        tempFiles.clear();
+    }
+
+    /**
+     * 解析访问树形状 "深度x扇出x门限"
+     * @param shape
+     * @return {深度, 扇出, 门限}
+     */
+    static int[] shape(String shape) {
+        String[] parts = shape.split("x");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Tree shape must be depth x fanout x threshold: " + shape);
+        }
+        return new int[]{Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+    }
+
+    static int[] attributes(int n) {
+        int[] atts = new int[n];
+        for (int i = 0; i < n; i++) {
+            atts[i] = i + 1;
+        }
+        return atts;
+    }
+
+    String tempFile(String prefix) throws IOException {
+        File f = File.createTempFile("kpabe-" + prefix, ".properties");
+        tempFiles.add(f);
+        return f.getPath();
+    }
+
+    private Element randomMessage() {
+        return PairingBackend.forParameters(params).getPairing().getGT().newRandomElement().getImmutable();
+    }
+}
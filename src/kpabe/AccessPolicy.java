@@ -0,0 +1,125 @@
+package kpabe;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 编译后的不可变访问控制树
+ * 由Node[]构建，门限值、子节点和叶子属性存放在扁平的基本类型数组中（子节点按CSR方式连续存放），
+ * 不含任何与单次运算相关的状态。每次解密的中间状态放在DecryptionPlan中，
+ * DecryptionPlan可以通过acquirePlan/releasePlan在多次解密之间复用，
+ * 因此同一个AccessPolicy可以被多个线程同时用于解密。
+ */
+public final class AccessPolicy {
+    // 节点i的门限值，叶子节点为0
+    private final int[] threshold;
+    // 节点i的子节点为 children[childStart[i]] ... children[childStart[i+1]-1]
+    private final int[] childStart;
+    private final int[] children;
+    // 节点i的属性值，内部节点无意义
+    private final int[] att;
+
+    private final ConcurrentLinkedQueue<DecryptionPlan> plans = new ConcurrentLinkedQueue<DecryptionPlan>();
+
+    private AccessPolicy(int[] threshold, int[] childStart, int[] children, int[] att) {
+        this.threshold = threshold;
+        this.childStart = childStart;
+        this.children = children;
+        this.att = att;
+    }
+
+    /**
+     * 编译访问控制树，根节点为nodes[0]
+     * 叶子必须是整数属性；字符串属性的叶子（new Node(String)）只能用于LargeUniverseKPABE
+     * @param nodes
+     * @return
+     * @throws IllegalArgumentException 门限值或子节点索引无效，或者叶子是字符串属性
+     */
+    public static AccessPolicy compile(Node[] nodes) {
+        int n = nodes.length;
+        int[] threshold = new int[n];
+        int[] childStart = new int[n + 1];
+        int[] att = new int[n];
+        for (int i = 0; i < n; i++) {
+            childStart[i + 1] = childStart[i] + (nodes[i].isLeaf() ? 0 : nodes[i].children.length);
+        }
+        int[] children = new int[childStart[n]];
+        boolean[] hasParent = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            Node node = nodes[i];
+            if (node.isLeaf()) {
+                if (node.attName != null) {
+                    throw new IllegalArgumentException("Node " + i + " has string attribute \"" + node.attName + "\"; use LargeUniverseKPABE for string attributes");
+                }
+                att[i] = node.att;
+                continue;
+            }
+            if (node.gate[0] < 1 || node.gate[0] > node.children.length) {
+                throw new IllegalArgumentException("Node " + i + " has threshold " + node.gate[0] + " for " + node.children.length + " children");
+            }
+            threshold[i] = node.gate[0];
+            for (int j = 0; j < node.children.length; j++) {
+                int child = node.children[j];
+                if (child <= 0 || child >= n || hasParent[child]) {
+                    throw new IllegalArgumentException("Node " + i + " has invalid child index " + child);
+                }
+                hasParent[child] = true;
+                children[childStart[i] + j] = child;
+            }
+        }
+        return new AccessPolicy(threshold, childStart, children, att);
+    }
+
+    public int size() {
+        return threshold.length;
+    }
+
+    public boolean isLeaf(int i) {
+        return threshold[i] == 0;
+    }
+
+    public int threshold(int i) {
+        return threshold[i];
+    }
+
+    public int att(int i) {
+        return att[i];
+    }
+
+    public int childStart(int i) {
+        return childStart[i];
+    }
+
+    public int childEnd(int i) {
+        return childStart[i + 1];
+    }
+
+    // 节点i的全部子节点索引（副本）
+    public int[] children(int i) {
+        return Arrays.copyOfRange(children, childStart[i], childStart[i + 1]);
+    }
+
+    // 子节点数组中第k个位置上的子节点索引
+    public int child(int k) {
+        return children[k];
+    }
+
+    public int childCount() {
+        return children.length;
+    }
+
+    /**
+     * 取出一个可复用的解密计划，用完后应调用releasePlan归还
+     * @return
+     */
+    public DecryptionPlan acquirePlan() {
+        DecryptionPlan plan = plans.poll();
+        return plan != null ? plan : new DecryptionPlan(this);
+    }
+
+    public void releasePlan(DecryptionPlan plan) {
+        if (plan.policy == this) {
+            plans.offer(plan);
+        }
+    }
+}
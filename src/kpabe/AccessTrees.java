@@ -0,0 +1,71 @@
+package kpabe;
+
+/**
+ * 常用形状的访问控制树，供示例、批量密钥生成和基准测试使用
+ * 节点按层序编号，根节点为第0个节点，叶子的属性值依次为1、2、3……
+ */
+public final class AccessTrees {
+    private AccessTrees() {
+    }
+
+    /**
+     * 单个 k-of-n 门限门的访问树，叶子节点索引为1..n，属性值为1..n
+     * @param k
+     * @param n
+     * @return
+     */
+    public static Node[] threshold(int k, int n) {
+        Node[] accessTree = new Node[n + 1];
+        int[] children = new int[n];
+        for (int i = 1; i <= n; i++) {
+            children[i - 1] = i;
+            accessTree[i] = new Node(i);
+        }
+        accessTree[0] = new Node(new int[]{k, n}, children);
+        return accessTree;
+    }
+
+    /**
+     * 满树：每个内部节点都是 threshold-of-fanout 门限门，共depth层内部节点，叶子的属性值依次为1..fanout^depth
+     * @param depth
+     * @param fanout
+     * @param threshold
+     * @return
+     */
+    public static Node[] full(int depth, int fanout, int threshold) {
+        int internal = 0;
+        for (int level = 0; level < depth; level++) {
+            internal += pow(fanout, level);
+        }
+        int leaves = pow(fanout, depth);
+        Node[] accessTree = new Node[internal + leaves];
+        for (int i = 0; i < internal; i++) {
+            int[] children = new int[fanout];
+            for (int j = 0; j < fanout; j++) {
+                children[j] = i * fanout + j + 1;
+            }
+            accessTree[i] = new Node(new int[]{threshold, fanout}, children);
+        }
+        for (int i = 0; i < leaves; i++) {
+            accessTree[internal + i] = new Node(i + 1);
+        }
+        return accessTree;
+    }
+
+    /**
+     * @param depth
+     * @param fanout
+     * @return 满树的叶子数 fanout^depth
+     */
+    public static int leaves(int depth, int fanout) {
+        return pow(fanout, depth);
+    }
+
+    private static int pow(int base, int exp) {
+        int result = 1;
+        for (int i = 0; i < exp; i++) {
+            result *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,183 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 批量加密：同一属性集下的大量记录
+ *
+ * 混合模式：整批只做一次ABE加密（一个头部，加密随机GT元素K），每条记录用由K派生的AES-GCM密钥单独加密，
+ * 第i条记录的nonce由i构成，因此每条记录都可以单独解密。整批的ABE开销与记录数无关。
+ * 整批的记录数作为每条记录的附加认证数据，记录被重排、删去（包括删去末尾的记录）或追加时，解密都会认证失败；
+ * 单独解密某条记录时需要同时知道整批的记录数。
+ *
+ * 纯ABE模式：每条记录仍然各自选取随机数s（不同记录共用s会让密文之间可以互相关联），
+ * 但复用引擎中g、egg_y、Ti的预计算表，并把记录分配到线程池中流水执行。
+ *
+ * 两种模式都返回耗时，可以换算为每秒处理的记录数。
+ */
+public class BatchEncryptor {
+    private static final int TAG_BITS = 128;
+
+    // Cipher不是线程安全的，每个线程复用一个实例
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance("AES/GCM/NoPadding");
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private final KPABEEngine engine;
+    // 为null时在当前线程串行处理
+    private final ExecutorService executor;
+
+    /**
+     * @param engine
+     * @param executor 处理各条记录的线程池，为null时串行处理；线程池由调用者负责关闭
+     */
+    public BatchEncryptor(KPABEEngine engine, ExecutorService executor) {
+        this.engine = engine;
+        this.executor = executor;
+    }
+
+    /**
+     * 混合模式批量加密
+     * @param messageAttList
+     * @param messages
+     * @return 一个ABE头部和与messages按位置对应的对称密文
+     * @throws GeneralSecurityException
+     */
+    public HybridBatch encryptHybrid(int[] messageAttList, byte[][] messages) throws GeneralSecurityException {
+        long start = System.nanoTime();
+        Element K = engine.getPairing().getGT().newRandomElement().getImmutable();
+        Ciphertext header = engine.encrypt(K, messageAttList);
+        SecretKeySpec key = HybridCipher.deriveKey(K);
+
+        byte[][] bodies = new byte[messages.length][];
+        sealAll(key, messages, bodies, Cipher.ENCRYPT_MODE);
+        return new HybridBatch(header, bodies, System.nanoTime() - start);
+    }
+
+    /**
+     * 解密混合模式的一批记录
+     * @param decryptor
+     * @param policy
+     * @param batch
+     * @return 与batch.bodies按位置对应的明文；访问控制树不被满足时返回null
+     * @throws GeneralSecurityException 记录被篡改、重排或增删时为AEADBadTagException
+     */
+    public byte[][] decryptHybrid(Decryptor decryptor, AccessPolicy policy, HybridBatch batch) throws GeneralSecurityException {
+        Element K = decryptor.decrypt(policy, batch.header);
+        if (K == null) {
+            return null;
+        }
+        SecretKeySpec key = HybridCipher.deriveKey(K);
+        byte[][] messages = new byte[batch.bodies.length][];
+        sealAll(key, batch.bodies, messages, Cipher.DECRYPT_MODE);
+        return messages;
+    }
+
+    /**
+     * 纯ABE模式批量加密，每条记录独立选取s
+     * @param messageAttList
+     * @param messages GT上的明文
+     * @return 与messages按位置对应的密文
+     */
+    public PureBatch encrypt(int[] messageAttList, Element[] messages) {
+        long start = System.nanoTime();
+        //先为所有属性建好预计算表，避免各线程同时为同一属性建表
+        engine.prepareAttributes(messageAttList);
+        Ciphertext[] ciphertexts = new Ciphertext[messages.length];
+        //记录之间并行，单条记录内部串行计算
+        ParallelTasks.forEach(executor, messages.length, i -> ciphertexts[i] = engine.encrypt(messages[i], messageAttList, null));
+        return new PureBatch(ciphertexts, System.nanoTime() - start);
+    }
+
+    // 逐条加密或解密，线程池中抛出的GeneralSecurityException原样抛给调用者
+    private void sealAll(SecretKeySpec key, byte[][] inputs, byte[][] outputs, int mode) throws GeneralSecurityException {
+        byte[] count = ByteBuffer.allocate(4).putInt(inputs.length).array();
+        try {
+            ParallelTasks.forEach(executor, inputs.length, i -> outputs[i] = seal(key, i, count, inputs[i], mode));
+        }
+        catch (RecordException e) {
+            throw e.cause;
+        }
+    }
+
+    private static byte[] seal(SecretKeySpec key, long index, byte[] count, byte[] input, int mode) {
+        Cipher cipher = CIPHER.get();
+        try {
+            cipher.init(mode, key, new GCMParameterSpec(TAG_BITS, HybridCipher.nonce(index)));
+            cipher.updateAAD(count);
+            return cipher.doFinal(input);
+        }
+        catch (GeneralSecurityException e) {
+            throw new RecordException(e);
+        }
+    }
+
+    // 在IntConsumer中携带受检的GeneralSecurityException
+    private static final class RecordException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final GeneralSecurityException cause;
+
+        RecordException(GeneralSecurityException cause) {
+            super(cause);
+            this.cause = cause;
+        }
+    }
+
+    // 批量结果的公共部分
+    public abstract static class Batch {
+        public final long elapsedNanos;
+
+        Batch(long elapsedNanos) {
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public abstract int size();
+
+        public double recordsPerSecond() {
+            return size() * 1e9 / Math.max(1, elapsedNanos);
+        }
+    }
+
+    public static class HybridBatch extends Batch {
+        public final Ciphertext header;
+        public final byte[][] bodies;
+
+        public HybridBatch(Ciphertext header, byte[][] bodies, long elapsedNanos) {
+            super(elapsedNanos);
+            this.header = header;
+            this.bodies = bodies;
+        }
+
+        @Override
+        public int size() {
+            return bodies.length;
+        }
+    }
+
+    public static class PureBatch extends Batch {
+        public final Ciphertext[] ciphertexts;
+
+        PureBatch(Ciphertext[] ciphertexts, long elapsedNanos) {
+            super(elapsedNanos);
+            this.ciphertexts = ciphertexts;
+        }
+
+        @Override
+        public int size() {
+            return ciphertexts.length;
+        }
+    }
+}
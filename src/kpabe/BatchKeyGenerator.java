@@ -0,0 +1,183 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 批量密钥生成
+ * 只在构造时读取一次曲线参数、公钥和主密钥，缓存解码后的ti及其逆元 1/ti，
+ * 之后每个叶子的私钥组件 Di=g2^(q(i)/ti) 只需一次Zr乘法和一次g2的固定底数幂运算，不再做域上求逆（对称配对中g2=g）。
+ * 生成的私钥以 [int 长度][BinaryFormat私钥] 的记录顺序写入输出流，可以用readKey逐个读回。
+ * 用法：java kpabe.BatchKeyGenerator [曲线参数文件] [用户数] [叶子数]，比较逐次调用KPABE.keygen与批量生成的吞吐量
+ */
+public class BatchKeyGenerator {
+    // 每次并行生成的私钥数，生成完一组后按顺序写出，限制尚未写出的私钥占用的内存
+    static final int CHUNK_SIZE = 256;
+
+    private final Pairing bp;
+    private final Element y;
+    // 主密钥组件的逆元 1/ti，以属性值为键
+    private final Map<Integer, Element> tInverse;
+    private final ElementPowPreProcessing gTable;
+
+    /**
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param mskFileName
+     */
+    public BatchKeyGenerator(String pairingParametersFileName, String pkFileName, String mskFileName) {
+        this(PairingBackend.forParameters(pairingParametersFileName), pkFileName, mskFileName);
+    }
+
+    private BatchKeyGenerator(PairingBackend backend, String pkFileName, String mskFileName) {
+        this(backend, PublicKey.load(pkFileName, backend.getPairing()), MasterKey.load(mskFileName, backend.getPairing()));
+    }
+
+    /**
+     * @param backend
+     * @param pk 已解码的公钥，只使用其中的生成元g2
+     * @param msk 已解码的主密钥
+     */
+    public BatchKeyGenerator(PairingBackend backend, PublicKey pk, MasterKey msk) {
+        this.bp = backend.getPairing();
+        this.y = msk.y;
+        this.gTable = pk.g2.getElementPowPreProcessing();
+
+        //每个ti只求一次逆元
+        Map<Integer, Element> tInverse = new HashMap<Integer, Element>();
+        for (Map.Entry<Integer, Element> entry : msk.t.entrySet()) {
+            tInverse.put(entry.getKey(), entry.getValue().duplicate().invert().getImmutable());
+        }
+        this.tInverse = tInverse;
+    }
+
+    /**
+     * 为一个用户生成私钥，访问策略只读，可以在多个线程中同时调用
+     * @param policy
+     * @return
+     */
+    public DecryptionKey keygen(AccessPolicy policy) {
+        //批量生成时已经在用户之间并行，单个用户内部串行共享秘密
+        Element[] shares = TreeTasks.share(policy, y, bp, null);
+        Map<Integer, Element> D = new HashMap<Integer, Element>();
+        for (int i = 0; i < policy.size(); i++) {
+            if (policy.isLeaf(i)) {
+                //Di=g2^(q(i)/ti)=g2^(q(i)*(1/ti))
+                Element q = shares[i].duplicate().mul(inverse(policy.att(i)));
+                D.put(policy.att(i), gTable.powZn(q).getImmutable());
+            }
+        }
+        return new DecryptionKey(D);
+    }
+
+    /**
+     * 为多个用户生成私钥并按顺序写入输出流，同一策略模板的多个用户可以传入 Collections.nCopies(n, policy)
+     * @param policies
+     * @param out 由调用者负责关闭
+     * @param executor 并行生成私钥的线程池，为null时串行生成；线程池由调用者负责关闭
+     * @return 写出的私钥数
+     * @throws IOException
+     */
+    public int generate(List<AccessPolicy> policies, OutputStream out, ExecutorService executor) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        DecryptionKey[] keys = new DecryptionKey[Math.min(CHUNK_SIZE, policies.size())];
+        for (int from = 0; from < policies.size(); from += CHUNK_SIZE) {
+            int base = from;
+            int n = Math.min(CHUNK_SIZE, policies.size() - from);
+            ParallelTasks.forEach(executor, n, k -> keys[k] = keygen(policies.get(base + k)));
+            for (int k = 0; k < n; k++) {
+                byte[] bytes = BinaryFormat.encodeDecryptionKey(keys[k], true);
+                data.writeInt(bytes.length);
+                data.write(bytes);
+            }
+        }
+        data.flush();
+        return policies.size();
+    }
+
+    /**
+     * 从generate写出的流中读取下一个私钥
+     * @param in
+     * @param bp
+     * @return 私钥；流已结束时返回null
+     * @throws IOException
+     */
+    public static DecryptionKey readKey(DataInputStream in, Pairing bp) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return BinaryFormat.decodeDecryptionKey(ByteBuffer.wrap(bytes), bp);
+    }
+
+    private Element inverse(int att) {
+        Element inverse = tInverse.get(att);
+        if (inverse == null) {
+            throw new IllegalArgumentException("Attribute " + att + " is not in the master key");
+        }
+        return inverse;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String pairingParametersFileName = args.length > 0 ? args[0] : "a.properties";
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        int leaves = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        File pk = File.createTempFile("kpabe-pk", ".properties");
+        File msk = File.createTempFile("kpabe-msk", ".properties");
+        File sk = File.createTempFile("kpabe-sk", ".properties");
+        File keys = File.createTempFile("kpabe-keys", ".bin");
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            KPABE.setup(pairingParametersFileName, leaves, pk.getPath(), msk.getPath());
+            //所有用户使用同一个 (leaves/2)-of-leaves 策略模板
+            Node[] accessTree = AccessTrees.threshold(Math.max(1, leaves / 2), leaves);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                KPABE.keygen(pairingParametersFileName, accessTree, pk.getPath(), msk.getPath(), sk.getPath());
+            }
+            double perCall = users * 1e9 / (System.nanoTime() - start);
+
+            start = System.nanoTime();
+            BatchKeyGenerator generator = new BatchKeyGenerator(pairingParametersFileName, pk.getPath(), msk.getPath());
+            List<AccessPolicy> policies = Collections.nCopies(users, AccessPolicy.compile(accessTree));
+            try (OutputStream out = new FileOutputStream(keys)) {
+                generator.generate(policies, out, null);
+            }
+            double batch = users * 1e9 / (System.nanoTime() - start);
+
+            start = System.nanoTime();
+            try (OutputStream out = new FileOutputStream(keys)) {
+                generator.generate(policies, out, executor);
+            }
+            double parallel = users * 1e9 / (System.nanoTime() - start);
+
+            System.out.println("users=" + users + " leaves=" + leaves);
+            System.out.printf("KPABE.keygen per call\t%.1f keys/s%n", perCall);
+            System.out.printf("batch, serial\t%.1f keys/s%n", batch);
+            System.out.printf("batch, %d threads\t%.1f keys/s%n", threads, parallel);
+        }
+        finally {
+            //工作线程不是守护线程，出错时也要关闭，否则JVM不会退出
+            executor.shutdown();
+            pk.delete();
+            msk.delete();
+            sk.delete();
+            keys.delete();
+        }
+    }
+}
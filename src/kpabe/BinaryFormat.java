@@ -0,0 +1,305 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.jpbc.Point;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * pk、msk、sk、ct的紧凑二进制格式，取代Base64编码的Properties文本文件
+ *
+ * 布局：
+ *   magic "KPAB"(4字节) | 版本(1字节) | 类型(1字节) | 标志(1字节)
+ *   属性个数(varint) | 属性值(zigzag varint)...
+ *   定长群元素记录...
+ * 各类型的群元素记录依次为：
+ *   pk：g(G1)，[g2(G2)]，egg_y(GT)，每个属性的Ti(G1)
+ *   msk：y(Zr)，每个属性的ti(Zr)
+ *   sk：每个属性的Di(G2)
+ *   ct：EP(GT)，每个属性的Ei(G1)
+ * 同一群的元素长度固定，因此不需要逐条记录长度；标志位COMPRESSED表示G1、G2元素以压缩点形式存放（约为一半长度，解码时需要开平方）。
+ * 标志位ASYMMETRIC表示公钥来自非对称配对，g之后另有g2；对称配对中G2=G1并且g2=g，不写g2。
+ */
+public class BinaryFormat {
+    private static final byte[] MAGIC = {'K', 'P', 'A', 'B'};
+    public static final int VERSION = 1;
+
+    public static final int TYPE_PK = 1;
+    public static final int TYPE_MSK = 2;
+    public static final int TYPE_SK = 3;
+    public static final int TYPE_CT = 4;
+
+    // 标志位：G1、G2元素使用压缩点形式
+    public static final int COMPRESSED = 1;
+    // 标志位：公钥中包含g2
+    public static final int ASYMMETRIC = 2;
+
+    /**
+     * 判断字节内容是否为本二进制格式
+     * @param bytes
+     * @return
+     */
+    public static boolean isBinary(byte[] bytes) {
+        if (bytes.length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (bytes[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 把Properties文本文件的内容解析为Properties
+    static Properties toProperties(byte[] bytes) {
+        Properties prop = new Properties();
+        try {
+            prop.load(new ByteArrayInputStream(bytes));
+        }
+        catch (IOException e) {
+            throw new IllegalArgumentException("Malformed properties content", e);
+        }
+        return prop;
+    }
+
+    // 把pk、msk、sk、ct文件的内容解析为Properties，二进制格式按类型解码后转换为与Properties文本文件相同的键
+    static Properties toProperties(byte[] bytes, Pairing bp) {
+        if (!isBinary(bytes)) {
+            return toProperties(bytes);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int type = bytes.length > MAGIC.length + 1 ? bytes[MAGIC.length + 1] : 0;
+        switch (type) {
+            case TYPE_PK:
+                return decodePublicKey(buf, bp).toProperties();
+            case TYPE_MSK:
+                return decodeMasterKey(buf, bp).toProperties();
+            case TYPE_SK:
+                return decodeDecryptionKey(buf, bp).toProperties();
+            case TYPE_CT:
+                return decodeCiphertext(buf, bp).toProperties();
+            default:
+                throw new IllegalArgumentException("Unknown container type " + type);
+        }
+    }
+
+    public static byte[] encodePublicKey(PublicKey pk, boolean compressed) {
+        int[] atts = sortedKeys(pk.T);
+        boolean asymmetric = pk.g2.getField() != pk.g.getField();
+        ByteArrayOutputStream out = header(TYPE_PK, (compressed ? COMPRESSED : 0) | (asymmetric ? ASYMMETRIC : 0), atts);
+        writePoint(out, pk.g, compressed);
+        if (asymmetric) {
+            writePoint(out, pk.g2, compressed);
+        }
+        write(out, pk.egg_y);
+        for (int att : atts) {
+            writePoint(out, pk.T.get(att), compressed);
+        }
+        return out.toByteArray();
+    }
+
+    public static PublicKey decodePublicKey(ByteBuffer buf, Pairing bp) {
+        int flags = readHeader(buf, TYPE_PK);
+        int[] atts = readAttributes(buf);
+        Element g = readPoint(buf, bp.getG1(), flags);
+        Element g2 = (flags & ASYMMETRIC) == 0 ? g : readPoint(buf, bp.getG2(), flags);
+        Element egg_y = read(buf, bp.getGT());
+        Map<Integer, Element> T = new HashMap<Integer, Element>();
+        for (int att : atts) {
+            T.put(att, readPoint(buf, bp.getG1(), flags));
+        }
+        return new PublicKey(g, g2, egg_y, T);
+    }
+
+    public static byte[] encodeMasterKey(MasterKey msk) {
+        int[] atts = sortedKeys(msk.t);
+        ByteArrayOutputStream out = header(TYPE_MSK, 0, atts);
+        write(out, msk.y);
+        for (int att : atts) {
+            write(out, msk.t.get(att));
+        }
+        return out.toByteArray();
+    }
+
+    public static MasterKey decodeMasterKey(ByteBuffer buf, Pairing bp) {
+        readHeader(buf, TYPE_MSK);
+        int[] atts = readAttributes(buf);
+        Element y = read(buf, bp.getZr());
+        Map<Integer, Element> t = new HashMap<Integer, Element>();
+        for (int att : atts) {
+            t.put(att, read(buf, bp.getZr()));
+        }
+        return new MasterKey(y, t);
+    }
+
+    public static byte[] encodeDecryptionKey(DecryptionKey sk, boolean compressed) {
+        int[] atts = sortedKeys(sk.D);
+        ByteArrayOutputStream out = header(TYPE_SK, compressed ? COMPRESSED : 0, atts);
+        for (int att : atts) {
+            writePoint(out, sk.D.get(att), compressed);
+        }
+        return out.toByteArray();
+    }
+
+    public static DecryptionKey decodeDecryptionKey(ByteBuffer buf, Pairing bp) {
+        int flags = readHeader(buf, TYPE_SK);
+        int[] atts = readAttributes(buf);
+        Map<Integer, Element> D = new HashMap<Integer, Element>();
+        for (int att : atts) {
+            D.put(att, readPoint(buf, bp.getG2(), flags));
+        }
+        return new DecryptionKey(D);
+    }
+
+    public static byte[] encodeCiphertext(Ciphertext ct, boolean compressed) {
+        ByteArrayOutputStream out = header(TYPE_CT, compressed ? COMPRESSED : 0, ct.messageAttList);
+        write(out, ct.EP);
+        for (int att : ct.messageAttList) {
+            writePoint(out, ct.E.get(att), compressed);
+        }
+        return out.toByteArray();
+    }
+
+    public static Ciphertext decodeCiphertext(ByteBuffer buf, Pairing bp) {
+        int flags = readHeader(buf, TYPE_CT);
+        int[] messageAttList = readAttributes(buf);
+        Element EP = read(buf, bp.getGT());
+        Map<Integer, Element> E = new LinkedHashMap<Integer, Element>();
+        for (int att : messageAttList) {
+            E.put(att, readPoint(buf, bp.getG1(), flags));
+        }
+        return new Ciphertext(messageAttList, EP, E);
+    }
+
+    private static int[] sortedKeys(Map<Integer, Element> map) {
+        int[] keys = map.keySet().stream().mapToInt(i->i).toArray();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static ByteArrayOutputStream header(int type, int flags, int[] atts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MAGIC, 0, MAGIC.length);
+        out.write(VERSION);
+        out.write(type);
+        out.write(flags);
+        writeVarint(out, atts.length);
+        for (int att : atts) {
+            writeVarint(out, (att << 1) ^ (att >> 31));  //zigzag编码
+        }
+        return out;
+    }
+
+    private static int readHeader(ByteBuffer buf, int expectedType) {
+        for (byte b : MAGIC) {
+            if (buf.get() != b) {
+                throw new IllegalArgumentException("Not a KP-ABE binary container");
+            }
+        }
+        int version = buf.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported binary format version " + version);
+        }
+        int type = buf.get() & 0xFF;
+        if (type != expectedType) {
+            throw new IllegalArgumentException("Expected container type " + expectedType + " but found " + type);
+        }
+        return buf.get() & 0xFF;
+    }
+
+    private static int[] readAttributes(ByteBuffer buf) {
+        int n = readVarint(buf);
+        if (n < 0 || n > buf.remaining()) {
+            throw new IllegalArgumentException("Invalid attribute count " + n);
+        }
+        int[] atts = new int[n];
+        for (int i = 0; i < n; i++) {
+            int v = readVarint(buf);
+            atts[i] = (v >>> 1) ^ -(v & 1);
+        }
+        return atts;
+    }
+
+    static void writeVarint(ByteArrayOutputStream out, int v) {
+        while ((v & ~0x7F) != 0) {
+            out.write((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.write(v);
+    }
+
+    static int readVarint(ByteBuffer buf) {
+        int v = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = buf.get();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return v;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    private static void write(ByteArrayOutputStream out, Element e) {
+        byte[] bytes = e.toBytes();
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writePoint(ByteArrayOutputStream out, Element e, boolean compressed) {
+        byte[] bytes = compressed ? ((Point<?>) e).toBytesCompressed() : e.toBytes();
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static Element read(ByteBuffer buf, Field<?> field) {
+        Element e = field.newElement();
+        int length = field.getLengthInBytes();
+        if (buf.hasArray()) {
+            //堆内缓冲区直接在底层数组上解码，不复制
+            checkRemaining(buf, length);
+            e.setFromBytes(buf.array(), buf.arrayOffset() + buf.position());
+            buf.position(buf.position() + length);
+        }
+        else {
+            e.setFromBytes(slice(buf, length));
+        }
+        return e.getImmutable();
+    }
+
+    private static Element readPoint(ByteBuffer buf, Field<?> field, int flags) {
+        if ((flags & COMPRESSED) == 0) {
+            return read(buf, field);
+        }
+        Point<?> e = (Point<?>) field.newElement();
+        int length = e.getLengthInBytesCompressed();
+        if (buf.hasArray()) {
+            checkRemaining(buf, length);
+            e.setFromBytesCompressed(buf.array(), buf.arrayOffset() + buf.position());
+            buf.position(buf.position() + length);
+        }
+        else {
+            e.setFromBytesCompressed(slice(buf, length));
+        }
+        return e.getImmutable();
+    }
+
+    private static void checkRemaining(ByteBuffer buf, int length) {
+        if (buf.remaining() < length) {
+            throw new IllegalArgumentException("Truncated element record");
+        }
+    }
+
+    // 取出下一条定长记录（直接缓冲区、内存映射缓冲区）
+    private static byte[] slice(ByteBuffer buf, int length) {
+        checkRemaining(buf, length);
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return bytes;
+    }
+}
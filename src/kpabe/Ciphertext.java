@@ -0,0 +1,84 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 内存中的密文 ct = < E'=EP, {Ei}(i∈messageAttList) , messageAttList >
+ * 所有群元素均为不可变Element，可以在多个线程之间共享
+ */
+public class Ciphertext {
+    // 明文属性列表
+    public final int[] messageAttList;
+
+    // 密文组件 E'=EP=Me(g,g)^(ys)
+    public final Element EP;
+
+    // 密文组件 Ei=Ti^s，以属性值为键
+    public final Map<Integer, Element> E;
+
+    public Ciphertext(int[] messageAttList, Element EP, Map<Integer, Element> E) {
+        this.messageAttList = messageAttList;
+        this.EP = EP;
+        this.E = Collections.unmodifiableMap(E);
+    }
+
+    public boolean hasAttribute(int att) {
+        return E.containsKey(att);
+    }
+
+    /**
+     * 转换为与KPABE.encrypt写出的ct.properties相同格式的Properties
+     * @return
+     */
+    public Properties toProperties() {
+        Properties ctProp = new Properties();
+        for (int att : messageAttList) {
+            ctProp.setProperty("E"+att, Base64.getEncoder().withoutPadding().encodeToString(E.get(att).toBytes()));
+        }
+        ctProp.setProperty("EP", Base64.getEncoder().withoutPadding().encodeToString(EP.toBytes()));
+        ctProp.setProperty("messageAttList", Arrays.toString(messageAttList));
+        return ctProp;
+    }
+
+    /**
+     * 从ct.properties格式的Properties中解码密文
+     * @param ctProp
+     * @param bp
+     * @return
+     */
+    public static Ciphertext fromProperties(Properties ctProp, Pairing bp) {
+        String messageAttListString = ctProp.getProperty("messageAttList");
+        int[] messageAttList = Arrays.stream(messageAttListString.substring(1, messageAttListString.length()-1).split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        Map<Integer, Element> E = new HashMap<Integer, Element>();
+        for (int att : messageAttList) {
+            String EString = ctProp.getProperty("E"+att);
+            E.put(att, bp.getG1().newElementFromBytes(Base64.getDecoder().decode(EString)).getImmutable());
+        }
+        String EPString = ctProp.getProperty("EP");
+        Element EP = bp.getGT().newElementFromBytes(Base64.getDecoder().decode(EPString)).getImmutable();
+        return new Ciphertext(messageAttList, EP, E);
+    }
+
+    /**
+     * 读取密文文件，支持ct.properties格式和BinaryFormat二进制格式
+     * @param ctFileName
+     * @param bp
+     * @return
+     */
+    public static Ciphertext load(String ctFileName, Pairing bp) {
+        long start = System.nanoTime();
+        byte[] bytes = KPABE.loadBytesFromFile(ctFileName);
+        Metrics.phase(MetricsListener.Phase.KEY_LOAD, start, 1);
+        start = System.nanoTime();
+        Ciphertext result = BinaryFormat.isBinary(bytes)
+                ? BinaryFormat.decodeCiphertext(ByteBuffer.wrap(bytes), bp)
+                : fromProperties(BinaryFormat.toProperties(bytes), bp);
+        Metrics.phase(MetricsListener.Phase.ELEMENT_DECODE, start, result.E.size() + 1);
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 解密结果缓存
+ * 以（私钥标识，密文摘要）为键缓存恢复出的盲化因子 e(g,g)^ys，命中时明文只需 EP/e(g,g)^ys 一次GT上的除法，
+ * 混合加密的头部同样适用（K=EP/e(g,g)^ys，再派生AES密钥）。
+ * 私钥标识由调用者指定，必须与解密器使用的私钥一一对应。
+ *
+ * 缓存按最近最少使用淘汰，条目数有上限，并且每个条目在写入后超过存活时间即失效。
+ * 每次查找和写入都会先删除所有已过期的条目；长时间没有请求时，可以定期调用purgeExpired清理。
+ * 盲化因子以字节数组保存，条目被淘汰、过期、失效或清空时数组被清零；缓存的字节不会直接返回给调用者。
+ * 命中时由字节副本重建的盲化因子在除法之后清零。未命中时Decryptor返回的盲化因子是不可变Element，无法清零，
+ * 它和返回给调用者的明文一样，要等到没有引用之后由垃圾回收释放。
+ * 所有方法都可以被多个线程同时调用。
+ */
+public class DecryptionCache {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final Pairing bp;
+    private final int capacity;
+    private final long ttlNanos;
+    private final LinkedHashMap<CacheKey, Entry> cache;
+    // 按写入顺序排列的条目；所有条目的存活时间相同，因此队首最先过期。不过期时不使用
+    private final ArrayDeque<Entry> expiryQueue = new ArrayDeque<Entry>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * @param bp
+     * @param capacity 最多缓存的条目数
+     * @param ttl 条目的存活时间，为0时不过期
+     * @param unit
+     */
+    public DecryptionCache(Pairing bp, int capacity, long ttl, TimeUnit unit) {
+        if (capacity <= 0 || ttl < 0) {
+            throw new IllegalArgumentException("Invalid cache capacity " + capacity + " or ttl " + ttl);
+        }
+        this.bp = bp;
+        this.capacity = capacity;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.cache = new LinkedHashMap<CacheKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                if (size() > capacity) {
+                    evictions.incrementAndGet();
+                    eldest.getValue().zeroize();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 解密，命中缓存时不做配对和拉格朗日恢复
+     * @param keyId 私钥标识
+     * @param decryptor 与keyId对应的解密器
+     * @param policy
+     * @param ct
+     * @return 明文；访问控制树不被满足时返回null（不满足的结果不缓存）
+     */
+    public Element decrypt(String keyId, Decryptor decryptor, AccessPolicy policy, Ciphertext ct) {
+        CacheKey key = new CacheKey(keyId, ciphertextId(ct));
+        byte[] bytes = lookup(key);
+        if (bytes != null) {
+            hits.incrementAndGet();
+            Element blinding = bp.getGT().newElementFromBytes(bytes);
+            Arrays.fill(bytes, (byte) 0);
+            Element message = ct.EP.div(blinding);
+            blinding.setToZero();
+            return message;
+        }
+        misses.incrementAndGet();
+        Element blinding = decryptor.recoverBlinding(policy, ct);
+        if (blinding == null) {
+            return null;
+        }
+        synchronized (this) {
+            long now = System.nanoTime();
+            purgeExpired(now);
+            Entry entry = new Entry(key, blinding.toBytes(), now + ttlNanos);
+            Entry previous = cache.put(key, entry);
+            if (previous != null) {
+                previous.zeroize();
+            }
+            if (ttlNanos > 0) {
+                expiryQueue.addLast(entry);
+            }
+        }
+        return ct.EP.div(blinding);
+    }
+
+    /**
+     * 删除某个私钥的全部条目，例如私钥被撤销时
+     * @param keyId
+     */
+    public synchronized void invalidate(String keyId) {
+        Iterator<Map.Entry<CacheKey, Entry>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CacheKey, Entry> e = it.next();
+            if (e.getKey().keyId.equals(keyId)) {
+                e.getValue().zeroize();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * 清空缓存并清零所有条目
+     */
+    public synchronized void clear() {
+        for (Entry entry : cache.values()) {
+            entry.zeroize();
+        }
+        cache.clear();
+        expiryQueue.clear();
+    }
+
+    /**
+     * 删除并清零所有已过期的条目
+     * 查找和写入时会自动清理；缓存长时间空闲时可以由定时任务调用，避免过期的盲化因子一直留在内存中
+     */
+    public synchronized void purgeExpired() {
+        purgeExpired(System.nanoTime());
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    // 因容量不足被淘汰的条目数
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    // 因超过存活时间被删除的条目数
+    public long expirationCount() {
+        return expirations.get();
+    }
+
+    public double hitRate() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    /**
+     * 密文摘要：SHA-256(BinaryFormat编码的整个密文)
+     * 摘要覆盖EP、属性列表和全部Ei，修改任何一个Ei的密文都不会命中原密文的条目
+     * @param ct
+     * @return
+     */
+    public static byte[] ciphertextId(Ciphertext ct) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(BinaryFormat.encodeCiphertext(ct, false));
+        }
+        catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // 各条目保存盲化因子的数组本身（不是副本），只在本包内用于检查清零
+    synchronized List<byte[]> entryBytes() {
+        List<byte[]> bytes = new ArrayList<byte[]>();
+        for (Entry entry : cache.values()) {
+            bytes.add(entry.blinding);
+        }
+        return bytes;
+    }
+
+    // 在锁内复制未过期条目的盲化因子，调用者用完后负责清零副本
+    private synchronized byte[] lookup(CacheKey key) {
+        purgeExpired(System.nanoTime());
+        Entry entry = cache.get(key);
+        return entry == null ? null : entry.blinding.clone();
+    }
+
+    // 从队首删除已过期的条目；调用者持有锁
+    private void purgeExpired(long now) {
+        Entry head;
+        while ((head = expiryQueue.peekFirst()) != null && (head.removed || now - head.expiresAt > 0)) {
+            expiryQueue.pollFirst();
+            if (!head.removed) {
+                expirations.incrementAndGet();
+                head.zeroize();
+                cache.remove(head.key);
+            }
+        }
+        //被替换、淘汰或失效的条目要到过期时才离开队首，积压过多时整体清理一次
+        if (expiryQueue.size() > 2 * capacity) {
+            expiryQueue.removeIf(e -> e.removed);
+        }
+    }
+
+    private static final class CacheKey {
+        final String keyId;
+        final byte[] ctId;
+
+        CacheKey(String keyId, byte[] ctId) {
+            this.keyId = keyId;
+            this.ctId = ctId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CacheKey && keyId.equals(((CacheKey) o).keyId) && Arrays.equals(ctId, ((CacheKey) o).ctId);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * keyId.hashCode() + Arrays.hashCode(ctId);
+        }
+    }
+
+    private static final class Entry {
+        final CacheKey key;
+        final byte[] blinding;
+        final long expiresAt;
+        // 已从缓存中删除并清零
+        boolean removed;
+
+        Entry(CacheKey key, byte[] blinding, long expiresAt) {
+            this.key = key;
+            this.blinding = blinding;
+            this.expiresAt = expiresAt;
+        }
+
+        void zeroize() {
+            Arrays.fill(blinding, (byte) 0);
+            removed = true;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 内存中的用户私钥 sk = { Di } (i∈userAttList)
+ * 所有群元素均为不可变Element，可以在多个线程之间共享
+ */
+public class DecryptionKey {
+    // 私钥组件 Di=g2^(q(i)/ti)，位于G2，以属性值为键
+    public final Map<Integer, Element> D;
+
+    public DecryptionKey(Map<Integer, Element> D) {
+        this.D = Collections.unmodifiableMap(D);
+    }
+
+    /**
+     * 转换为与KPABE.keygen写出的sk.properties相同格式的Properties
+     * @return
+     */
+    public Properties toProperties() {
+        Properties skProp = new Properties();
+        for (Map.Entry<Integer, Element> entry : D.entrySet()) {
+            skProp.setProperty("D"+entry.getKey(), Base64.getEncoder().withoutPadding().encodeToString(entry.getValue().toBytes()));
+        }
+        return skProp;
+    }
+
+    /**
+     * 从sk.properties格式的Properties中解码私钥
+     * @param skProp
+     * @param bp
+     * @return
+     */
+    public static DecryptionKey fromProperties(Properties skProp, Pairing bp) {
+        Map<Integer, Element> D = new HashMap<Integer, Element>();
+        for (String name : skProp.stringPropertyNames()) {
+            if (name.startsWith("D")) {
+                int att = Integer.parseInt(name.substring(1));
+                D.put(att, bp.getG2().newElementFromBytes(Base64.getDecoder().decode(skProp.getProperty(name))).getImmutable());
+            }
+        }
+        return new DecryptionKey(D);
+    }
+
+    /**
+     * 读取私钥文件，支持sk.properties格式和BinaryFormat二进制格式
+     * @param skFileName
+     * @param bp
+     * @return
+     */
+    public static DecryptionKey load(String skFileName, Pairing bp) {
+        long start = System.nanoTime();
+        byte[] bytes = KPABE.loadBytesFromFile(skFileName);
+        Metrics.phase(MetricsListener.Phase.KEY_LOAD, start, 1);
+        start = System.nanoTime();
+        DecryptionKey result = BinaryFormat.isBinary(bytes)
+                ? BinaryFormat.decodeDecryptionKey(ByteBuffer.wrap(bytes), bp)
+                : fromProperties(BinaryFormat.toProperties(bytes), bp);
+        Metrics.phase(MetricsListener.Phase.ELEMENT_DECODE, start, result.D.size());
+        return result;
+    }
+}
@@ -0,0 +1,261 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * 解密计划：只根据密文属性集，在做任何配对之前选出满足访问树的最小叶子集合
+ * 对每个门限门(t,n)，先计算每个子树满足时最少需要多少个叶子（即多少次配对），再选取代价最小的t个子节点。
+ * 之后只为计划中的叶子属性计算配对，访问树不可满足时不做任何配对。
+ *
+ * 解密计划是与一次解密相关的临时状态，所有数组按AccessPolicy的大小预先分配，
+ * 可以通过AccessPolicy.acquirePlan/releasePlan复用；同一时刻只能被一个线程使用。
+ */
+public class DecryptionPlan {
+    private static final int UNSATISFIABLE = Integer.MAX_VALUE;
+
+    final AccessPolicy policy;
+
+    // 满足以节点i为根的子树最少需要的叶子数
+    private final int[] cost;
+    // 内部节点i选中的子节点存放在 selected[policy.childStart(i)] 开始的selectedCount[i]个位置，按索引升序
+    private final int[] selected;
+    private final int[] selectedCount;
+    // 节点i的子树中参与恢复的叶子数，不在计划中的节点为0
+    private final int[] plannedLeaves;
+    // 需要计算配对的属性（去重）
+    private final int[] attributes;
+    private int attributeCount;
+
+    // 度量：生成计划时检查的叶子数，满足门限后跳过了多余可满足子节点的门限门个数
+    private int leavesVisited;
+    private int gatesShortCircuited;
+    // 度量：最近一次recover中拉格朗日因子和GT幂运算的耗时
+    private long lagrangeNanos;
+    private int lagrangeLookups;
+    private long exponentiationNanos;
+    private int exponentiations;
+
+    DecryptionPlan(AccessPolicy policy) {
+        this.policy = policy;
+        this.cost = new int[policy.size()];
+        this.selected = new int[policy.childCount()];
+        this.selectedCount = new int[policy.size()];
+        this.plannedLeaves = new int[policy.size()];
+        this.attributes = new int[policy.size()];
+    }
+
+    /**
+     * 为访问控制树和密文属性集生成一次性的解密计划
+     * @param nodes
+     * @param atts 密文属性集
+     * @return 解密计划；访问控制树不可满足时返回null
+     */
+    public static DecryptionPlan plan(Node[] nodes, int[] atts) {
+        DecryptionPlan plan = new DecryptionPlan(AccessPolicy.compile(nodes));
+        return plan.plan(atts) ? plan : null;
+    }
+
+    /**
+     * 根据密文属性集重新生成计划
+     * @param atts 密文属性集
+     * @return 访问控制树是否可满足
+     */
+    public boolean plan(int[] atts) {
+        Set<Integer> attSet = new HashSet<Integer>();
+        for (int att : atts) {
+            attSet.add(att);
+        }
+        return plan(attSet::contains);
+    }
+
+    /**
+     * 根据密文属性集重新生成计划
+     * @param hasAttribute 判断密文是否包含某个属性
+     * @return 访问控制树是否可满足
+     */
+    public boolean plan(IntPredicate hasAttribute) {
+        Arrays.fill(plannedLeaves, 0);
+        attributeCount = 0;
+        leavesVisited = 0;
+        gatesShortCircuited = 0;
+        if (cost(0, hasAttribute) == UNSATISFIABLE) {
+            return false;
+        }
+        mark(0);
+        //属性去重
+        Arrays.sort(attributes, 0, attributeCount);
+        int distinct = 0;
+        for (int k = 0; k < attributeCount; k++) {
+            if (distinct == 0 || attributes[distinct - 1] != attributes[k]) {
+                attributes[distinct++] = attributes[k];
+            }
+        }
+        attributeCount = distinct;
+        return true;
+    }
+
+    // 计算满足以节点i为根的子树最少需要的叶子数，并记录内部节点代价最小的threshold个子节点
+    private int cost(int i, IntPredicate hasAttribute) {
+        if (policy.isLeaf(i)) {
+            leavesVisited++;
+            cost[i] = hasAttribute.test(policy.att(i)) ? 1 : UNSATISFIABLE;
+            return cost[i];
+        }
+        int start = policy.childStart(i);
+        int m = 0;
+        for (int k = start; k < policy.childEnd(i); k++) {
+            int child = policy.child(k);
+            if (cost(child, hasAttribute) != UNSATISFIABLE) {
+                //按代价插入排序，代价相同的子节点保持索引顺序
+                int p = start + m;
+                while (p > start && cost[selected[p - 1]] > cost[child]) {
+                    selected[p] = selected[p - 1];
+                    p--;
+                }
+                selected[p] = child;
+                m++;
+            }
+        }
+        int t = policy.threshold(i);
+        if (m < t) {
+            selectedCount[i] = 0;
+            cost[i] = UNSATISFIABLE;
+            return cost[i];
+        }
+        if (m > t) {
+            gatesShortCircuited++;
+        }
+        long sum = 0;
+        for (int k = start; k < start + t; k++) {
+            sum += cost[selected[k]];
+        }
+        Arrays.sort(selected, start, start + t);
+        selectedCount[i] = t;
+        cost[i] = (int) Math.min(sum, UNSATISFIABLE - 1);
+        return cost[i];
+    }
+
+    // 从根节点出发标记计划中的节点，统计每个子树的叶子数并收集属性
+    private int mark(int i) {
+        if (policy.isLeaf(i)) {
+            attributes[attributeCount++] = policy.att(i);
+            plannedLeaves[i] = 1;
+            return 1;
+        }
+        int start = policy.childStart(i);
+        for (int k = start; k < start + selectedCount[i]; k++) {
+            plannedLeaves[i] += mark(selected[k]);
+        }
+        return plannedLeaves[i];
+    }
+
+    public AccessPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return 需要计算配对的属性（去重）
+     */
+    public int[] attributes() {
+        return Arrays.copyOf(attributes, attributeCount);
+    }
+
+    /**
+     * @return 最近一次生成计划时检查的叶子数
+     */
+    public int leavesVisited() {
+        return leavesVisited;
+    }
+
+    /**
+     * @return 最近一次生成计划时，满足门限后跳过了多余可满足子节点的门限门个数
+     */
+    public int gatesShortCircuited() {
+        return gatesShortCircuited;
+    }
+
+    /**
+     * @param i
+     * @return 节点i的子树中参与恢复的叶子数，不在计划中的节点为0
+     */
+    public int plannedLeaves(int i) {
+        return plannedLeaves[i];
+    }
+
+    /**
+     * @param i 计划中的内部节点
+     * @return 节点i参与秘密恢复的子节点索引，按索引升序
+     */
+    public int[] selectedChildren(int i) {
+        int start = policy.childStart(i);
+        return Arrays.copyOfRange(selected, start, start + selectedCount[i]);
+    }
+
+    /**
+     * 按计划恢复根节点的秘密值 e(g,g)^sy，拉格朗日因子和GT幂运算的耗时报告给Metrics
+     * @param shares 每个计划属性对应的配对结果 e(Ei,Di)，以属性值为键
+     * @param bp
+     * @param lagrange 拉格朗日因子缓存，为null时每次用LagrangeCache.compute直接计算（只解密一次时不需要缓存）
+     * @return
+     */
+    public Element recover(Map<Integer, Element> shares, Pairing bp, LagrangeCache lagrange) {
+        lagrangeNanos = 0;
+        lagrangeLookups = 0;
+        exponentiationNanos = 0;
+        exponentiations = 0;
+        Element secret = recover(0, shares, bp, lagrange);
+        MetricsListener listener = Metrics.listener();
+        listener.phase(MetricsListener.Phase.LAGRANGE, lagrangeNanos, lagrangeLookups);
+        listener.phase(MetricsListener.Phase.GT_EXPONENTIATION, exponentiationNanos, exponentiations);
+        return secret;
+    }
+
+    private Element recover(int i, Map<Integer, Element> shares, Pairing bp, LagrangeCache lagrange) {
+        if (policy.isLeaf(i)) {
+            return shares.get(policy.att(i));
+        }
+        int[] validChildren = selectedChildren(i);
+        long start = System.nanoTime();
+        Element[] deltas = lagrange == null ? LagrangeCache.compute(validChildren, bp) : lagrange.coefficients(validChildren);
+        lagrangeNanos += System.nanoTime() - start;
+        lagrangeLookups++;
+        Element secret = bp.getGT().newOneElement();
+        for (int j = 0; j < validChildren.length; j++) {
+            Element share = recover(validChildren[j], shares, bp, lagrange);
+            start = System.nanoTime();
+            secret.mul(share.duplicate().powZn(deltas[j]));
+            exponentiationNanos += System.nanoTime() - start;
+            exponentiations++;
+        }
+        return secret.getImmutable();
+    }
+
+    /**
+     * 按计划计算每个叶子属性在根节点秘密中的系数（根到叶子路径上拉格朗日因子的乘积，同一属性的系数相加）
+     * @param bp
+     * @param lagrange
+     * @return 以属性值为键的系数
+     */
+    public Map<Integer, Element> coefficients(Pairing bp, LagrangeCache lagrange) {
+        Map<Integer, Element> coefficients = new LinkedHashMap<Integer, Element>();
+        flatten(0, bp.getZr().newOneElement().getImmutable(), coefficients, lagrange);
+        return coefficients;
+    }
+
+    private void flatten(int i, Element coef, Map<Integer, Element> coefficients, LagrangeCache lagrange) {
+        if (policy.isLeaf(i)) {
+            Element sum = coefficients.get(policy.att(i));
+            coefficients.put(policy.att(i), sum == null ? coef : sum.add(coef).getImmutable());
+            return;
+        }
+        int[] validChildren = selectedChildren(i);
+        Element[] deltas = lagrange.coefficients(validChildren);
+        for (int j = 0; j < validChildren.length; j++) {
+            flatten(validChildren[j], coef.mul(deltas[j]).getImmutable(), coefficients, lagrange);
+        }
+    }
+}
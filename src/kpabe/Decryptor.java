@@ -0,0 +1,189 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.UnaryOperator;
+
+/**
+ * 绑定到某一个用户私钥的解密器
+ * 私钥组件Di在不同密文之间保持不变，构造时由配对后端为每个Di建立 Ei -> e(Ei,Di)（见PairingBackend.keyPairing），
+ * 后端支持时预先做只与Di相关的计算，之后每次解密只需要代入Ei完成剩余计算。
+ * 预处理结果只读，同一个Decryptor可以被多个线程同时使用。
+ *
+ * 另外提供多配对解密decryptMultiPairing：先把满足的访问树展开为每个叶子属性一个系数Δi，
+ * 把Δi移到G1上计算Di^Δi，再用一次 e(E1,D1^Δ1)·...·e(En,Dn^Δn) 的乘积配对共享最终幂运算，
+ * 省去每个叶子一次完整配对和一次GT上的幂运算，叶子较多时更快。
+ *
+ * 指定ForkJoinPool时，decrypt按子树并行计算配对和拉格朗日恢复（见TreeTasks），适合深或宽的访问树。
+ */
+public class Decryptor {
+    private final PairingBackend backend;
+    private final Pairing bp;
+    private final DecryptionKey sk;
+    // 每个叶子属性对应的 Ei -> e(Ei,Di)，以属性值为键
+    private final Map<Integer, UnaryOperator<Element>> D;
+    // 并行恢复子树的线程池，为null时串行恢复
+    private final ForkJoinPool pool;
+    private final LagrangeCache lagrange;
+
+    public Decryptor(PairingBackend backend, DecryptionKey sk) {
+        this(backend, sk, null);
+    }
+
+    /**
+     * @param backend
+     * @param sk
+     * @param pool 并行恢复子树的线程池，为null时串行恢复；线程池由调用者负责关闭
+     */
+    public Decryptor(PairingBackend backend, DecryptionKey sk, ForkJoinPool pool) {
+        this(backend, sk, pool, new LagrangeCache(backend.getPairing()));
+    }
+
+    /**
+     * @param backend
+     * @param sk
+     * @param pool 并行恢复子树的线程池，为null时串行恢复；线程池由调用者负责关闭
+     * @param lagrange 拉格朗日因子缓存，可以在多个解密器之间共享
+     */
+    public Decryptor(PairingBackend backend, DecryptionKey sk, ForkJoinPool pool, LagrangeCache lagrange) {
+        this.backend = backend;
+        this.bp = backend.getPairing();
+        this.pool = pool;
+        this.lagrange = lagrange;
+        this.sk = sk;
+        Map<Integer, UnaryOperator<Element>> D = new HashMap<Integer, UnaryOperator<Element>>();
+        for (Map.Entry<Integer, Element> entry : sk.D.entrySet()) {
+            D.put(entry.getKey(), backend.keyPairing(entry.getValue()));
+        }
+        this.D = Collections.unmodifiableMap(D);
+    }
+
+    /**
+     * 解密
+     * 先由DecryptionPlan选出最小的满足叶子集合，只为这些叶子属性计算配对，访问控制树不会被修改
+     * @param accessTree
+     * @param ct
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decrypt(Node[] accessTree, Ciphertext ct) {
+        return decrypt(AccessPolicy.compile(accessTree), ct);
+    }
+
+    /**
+     * 解密，同一访问策略反复解密时应先编译为AccessPolicy
+     * @param policy
+     * @param ct
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decrypt(AccessPolicy policy, Ciphertext ct) {
+        Element blinding = recoverBlinding(policy, ct);
+        return blinding == null ? null : ct.EP.div(blinding);
+    }
+
+    /**
+     * 恢复密文的盲化因子 e(g,g)^ys，明文 M=EP/e(g,g)^ys
+     * 同一密文反复解密时可以把盲化因子放入DecryptionCache，之后只需一次GT上的除法
+     * @param policy
+     * @param ct
+     * @return 盲化因子；访问控制树不被满足时返回null
+     */
+    public Element recoverBlinding(AccessPolicy policy, Ciphertext ct) {
+        long start = System.nanoTime();
+        DecryptionPlan plan = policy.acquirePlan();
+        try {
+            if (!plan.plan(ct::hasAttribute)) {
+                Metrics.decrypt(start, plan, 0, false);
+                return null;
+            }
+            int[] attributes = plan.attributes();
+            Element blinding;
+            if (pool != null) {
+                //并行恢复时各阶段交错进行，只报告整次解密
+                blinding = TreeTasks.recover(plan, att -> pairing(att, ct.E.get(att)), bp, lagrange, pool);
+            }
+            else {
+                long pairingStart = System.nanoTime();
+                Map<Integer, Element> shares = new HashMap<Integer, Element>();
+                for (int att : attributes) {
+                    //e(Ei,Di)=e(g,g)^( qx(0)*s )
+                    shares.put(att, pairing(att, ct.E.get(att)));
+                }
+                Metrics.phase(MetricsListener.Phase.PAIRING, pairingStart, attributes.length);
+                blinding = plan.recover(shares, bp, lagrange);
+            }
+            Metrics.decrypt(start, plan, attributes.length, true);
+            return blinding;
+        }
+        finally {
+            policy.releasePlan(plan);
+        }
+    }
+
+    /**
+     * 多配对解密
+     * 访问控制树不会被修改
+     * @param accessTree
+     * @param ct
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decryptMultiPairing(Node[] accessTree, Ciphertext ct) {
+        return decryptMultiPairing(AccessPolicy.compile(accessTree), ct);
+    }
+
+    /**
+     * 多配对解密
+     * @param policy
+     * @param ct
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decryptMultiPairing(AccessPolicy policy, Ciphertext ct) {
+        long start = System.nanoTime();
+        DecryptionPlan plan = policy.acquirePlan();
+        try {
+            if (!plan.plan(ct::hasAttribute)) {
+                Metrics.decrypt(start, plan, 0, false);
+                return null;
+            }
+            //展开访问树，得到每个参与恢复的叶子属性的系数（同一属性出现在多个叶子时系数相加）
+            long lagrangeStart = System.nanoTime();
+            Map<Integer, Element> coefficients = plan.coefficients(bp, lagrange);
+            Metrics.phase(MetricsListener.Phase.LAGRANGE, lagrangeStart, coefficients.size());
+            Element[] E = new Element[coefficients.size()];
+            Element[] DDelta = new Element[coefficients.size()];
+            int k = 0;
+            for (Map.Entry<Integer, Element> entry : coefficients.entrySet()) {
+                E[k] = ct.E.get(entry.getKey());
+                DDelta[k] = component(entry.getKey()).powZn(entry.getValue());  //Di^Δi
+                k++;
+            }
+            //连乘 e(Ei,Di^Δi)=e(g,g)^(s·求和q(i)Δi)=e(g,g)^sy
+            long pairingStart = System.nanoTime();
+            Element denominator = backend.pairing(E, DDelta);
+            Metrics.phase(MetricsListener.Phase.PAIRING, pairingStart, E.length);
+            Metrics.decrypt(start, plan, E.length, true);
+            return ct.EP.div(denominator);
+        }
+        finally {
+            policy.releasePlan(plan);
+        }
+    }
+
+    private Element component(int att) {
+        Element Di = sk.D.get(att);
+        if (Di == null) {
+            throw new IllegalArgumentException("Secret key has no component for attribute " + att);
+        }
+        return Di;
+    }
+
+    private Element pairing(int att, Element E) {
+        UnaryOperator<Element> pairing = D.get(att);
+        if (pairing == null) {
+            throw new IllegalArgumentException("Secret key has no component for attribute " + att);
+        }
+        return pairing.apply(E);
+    }
+}
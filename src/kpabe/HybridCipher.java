@@ -0,0 +1,261 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * KEM/DEM混合加密：KP-ABE只加密一个随机的GT元素K，由K派生AES-GCM密钥，再用对称密码流式加密任意长度的数据
+ * 直接把明文编码为GT元素时，明文最多只能有一个GT元素那么长，超出部分会丢失；混合模式没有长度限制，
+ * 并且数据按块处理，内存占用只与块大小有关，与文件大小无关。
+ *
+ * 输出格式：
+ *   头部长度(int) | 头部：BinaryFormat编码的ABE密文（加密K）
+ *   块大小(int)
+ *   块...：是否最后一块(1字节) | 密文长度(int) | AES-GCM密文（含16字节认证标签）
+ * 每块的nonce由块序号构成，块大小和是否最后一块作为附加认证数据，因此块被修改、重排、删除或块大小被修改都会导致认证失败（AEADBadTagException）；
+ * 流在最后一块结束之前中断时抛出EOFException，最后一块之后的多余数据同样被拒绝（IOException）。解密时按流中记录的块大小分配缓冲区，与解密方构造时指定的块大小无关。
+ * 每个K只用于一份数据，nonce不会重复。
+ */
+public class HybridCipher {
+    // 默认每块64KB明文
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    // 解密时接受的最大块大小，限制篡改后的块大小字段能导致的内存分配
+    public static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final int TAG_BITS = 128;
+    private static final int NONCE_LENGTH = 12;
+    private static final byte[] KDF_LABEL = "KPABE-DEM-AES-GCM".getBytes(StandardCharsets.US_ASCII);
+
+    private final KPABEEngine engine;
+    private final int chunkSize;
+
+    public HybridCipher(KPABEEngine engine) {
+        this(engine, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param engine
+     * @param chunkSize 加密时每块的明文字节数，1到MAX_CHUNK_SIZE
+     */
+    public HybridCipher(KPABEEngine engine, int chunkSize) {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + MAX_CHUNK_SIZE + ": " + chunkSize);
+        }
+        this.engine = engine;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * 加密 -- ABE头部与属性集相关联，数据流式加密
+     * @param messageAttList
+     * @param in 明文输入
+     * @param out 密文输出
+     * @throws IOException
+     * @throws GeneralSecurityException
+     */
+    public void encrypt(int[] messageAttList, ReadableByteChannel in, WritableByteChannel out) throws IOException, GeneralSecurityException {
+        //随机选取GT元素K作为会话密钥的来源，用ABE加密K
+        Element K = engine.getPairing().getGT().newRandomElement().getImmutable();
+        Ciphertext header = engine.encrypt(K, messageAttList);
+        writeHeader(out, header);
+        encryptBody(deriveKey(K), in, out);
+    }
+
+    /**
+     * 解密 -- 先用一次ABE解密恢复K，再流式解密数据
+     * @param decryptor
+     * @param policy
+     * @param in 密文输入
+     * @param out 明文输出
+     * @return 访问控制树不被满足时返回false，此时不输出任何数据
+     * @throws IOException 读取失败、格式错误或最后一块之后还有数据；流在最后一块结束之前中断时为EOFException
+     * @throws GeneralSecurityException 数据被篡改、重排或删除了中间的块（AEADBadTagException）
+     */
+    public boolean decrypt(Decryptor decryptor, AccessPolicy policy, ReadableByteChannel in, WritableByteChannel out) throws IOException, GeneralSecurityException {
+        Ciphertext header = readHeader(in);
+        Element K = decryptor.decrypt(policy, header);
+        if (K == null) {
+            return false;
+        }
+        decryptBody(deriveKey(K), in, out);
+        return true;
+    }
+
+    /**
+     * 解密 -- 通过解密结果缓存恢复K，同一用户反复读取同一文件时不再重复配对
+     * @param cache
+     * @param keyId 私钥标识，见DecryptionCache
+     * @param decryptor 与keyId对应的解密器
+     * @param policy
+     * @param in 密文输入
+     * @param out 明文输出
+     * @return 访问控制树不被满足时返回false，此时不输出任何数据
+     * @throws IOException 读取失败、格式错误或最后一块之后还有数据；流在最后一块结束之前中断时为EOFException
+     * @throws GeneralSecurityException 数据被篡改、重排或删除了中间的块（AEADBadTagException）
+     */
+    public boolean decrypt(DecryptionCache cache, String keyId, Decryptor decryptor, AccessPolicy policy, ReadableByteChannel in, WritableByteChannel out) throws IOException, GeneralSecurityException {
+        Ciphertext header = readHeader(in);
+        Element K = cache.decrypt(keyId, decryptor, policy, header);
+        if (K == null) {
+            return false;
+        }
+        decryptBody(deriveKey(K), in, out);
+        return true;
+    }
+
+    /**
+     * 由GT元素K派生AES-256密钥：SHA-256(标签 || K)
+     * @param K
+     * @return
+     * @throws GeneralSecurityException
+     */
+    public static SecretKeySpec deriveKey(Element K) throws GeneralSecurityException {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        md.update(KDF_LABEL);
+        byte[] digest = md.digest(K.toBytes());
+        SecretKeySpec key = new SecretKeySpec(digest, "AES");
+        Arrays.fill(digest, (byte) 0);
+        return key;
+    }
+
+    void writeHeader(WritableByteChannel out, Ciphertext header) throws IOException {
+        byte[] bytes = BinaryFormat.encodeCiphertext(header, false);
+        ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes).flip();
+        writeFully(out, buf);
+    }
+
+    Ciphertext readHeader(ReadableByteChannel in) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(in, length);
+        length.flip();
+        int n = length.getInt();
+        if (n <= 0 || n > (1 << 24)) {
+            throw new IOException("Invalid hybrid header length " + n);
+        }
+        ByteBuffer header = ByteBuffer.allocate(n);
+        readFully(in, header);
+        header.flip();
+        return BinaryFormat.decodeCiphertext(header, engine.getPairing());
+    }
+
+    void encryptBody(SecretKeySpec key, ReadableByteChannel in, WritableByteChannel out) throws IOException, GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        ByteBuffer size = ByteBuffer.allocate(4);
+        size.putInt(chunkSize).flip();
+        writeFully(out, size);
+        ByteBuffer current = ByteBuffer.allocate(chunkSize);
+        ByteBuffer next = ByteBuffer.allocate(chunkSize);
+        ByteBuffer sealed = ByteBuffer.allocate(5 + chunkSize + TAG_BITS / 8);
+        boolean eof = fill(in, current);
+        long index = 0;
+        while (true) {
+            //预读下一块，以便确定当前块是否为最后一块
+            boolean last = eof || fill(in, next) && next.position() == 0;
+            if (!last) {
+                eof = next.position() < chunkSize;
+            }
+            current.flip();
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(index)));
+            cipher.updateAAD(aad(chunkSize, last ? 1 : 0));
+            sealed.clear();
+            sealed.put((byte) (last ? 1 : 0)).putInt(cipher.getOutputSize(current.remaining()));
+            cipher.doFinal(current, sealed);
+            sealed.flip();
+            writeFully(out, sealed);
+            if (last) {
+                return;
+            }
+            ByteBuffer swap = current;
+            current = next;
+            next = swap;
+            next.clear();
+            index++;
+        }
+    }
+
+    void decryptBody(SecretKeySpec key, ReadableByteChannel in, WritableByteChannel out) throws IOException, GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        ByteBuffer size = ByteBuffer.allocate(4);
+        readFully(in, size);
+        size.flip();
+        //块大小由加密方决定，不能使用本实例的chunkSize；篡改后的块大小会在第一块认证时被发现
+        int streamChunkSize = size.getInt();
+        if (streamChunkSize < 1 || streamChunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk size " + streamChunkSize);
+        }
+        ByteBuffer chunkHeader = ByteBuffer.allocate(5);
+        ByteBuffer sealed = ByteBuffer.allocate(streamChunkSize + TAG_BITS / 8);
+        ByteBuffer plain = ByteBuffer.allocate(streamChunkSize + TAG_BITS / 8);
+        for (long index = 0; ; index++) {
+            chunkHeader.clear();
+            readFully(in, chunkHeader);
+            chunkHeader.flip();
+            byte last = chunkHeader.get();
+            int n = chunkHeader.getInt();
+            if (n < TAG_BITS / 8 || n > sealed.capacity()) {
+                throw new IOException("Invalid chunk length " + n);
+            }
+            sealed.clear().limit(n);
+            readFully(in, sealed);
+            sealed.flip();
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(index)));
+            cipher.updateAAD(aad(streamChunkSize, last));
+            plain.clear();
+            cipher.doFinal(sealed, plain);
+            plain.flip();
+            writeFully(out, plain);
+            if (last == 1) {
+                //最后一块之后不应再有数据
+                if (!fill(in, ByteBuffer.allocate(1))) {
+                    throw new IOException("Trailing data after the last chunk");
+                }
+                return;
+            }
+        }
+    }
+
+    // 每块的附加认证数据：块大小(int) | 是否最后一块(1字节)
+    private static byte[] aad(int chunkSize, int last) {
+        return ByteBuffer.allocate(5).putInt(chunkSize).put((byte) last).array();
+    }
+
+    // 由块序号构成的96位nonce
+    static byte[] nonce(long index) {
+        return ByteBuffer.allocate(NONCE_LENGTH).putLong(NONCE_LENGTH - 8, index).array();
+    }
+
+    // 尽量读满buf，返回是否已到达输入末尾
+    private static boolean fill(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (in.read(buf) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void readFully(ReadableByteChannel in, ByteBuffer buf) throws IOException {
+        if (fill(in, buf)) {
+            throw new EOFException("Truncated hybrid ciphertext");
+        }
+    }
+
+    private static void writeFully(WritableByteChannel out, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+    }
+}
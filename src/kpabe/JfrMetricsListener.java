@@ -0,0 +1,71 @@
+package kpabe;
+
+import jdk.jfr.*;
+
+/**
+ * 把度量记录为JFR事件，可以在JDK Mission Control中与GC、线程等事件放在同一时间线上查看
+ * 开启方式：Metrics.setListener(new JfrMetricsListener())，并以 -XX:StartFlightRecording 启动JVM。
+ * 事件未在录制配置中启用时只做一次isEnabled检查。需要提供jdk.jfr模块的JDK（11及以上，或8u272及以上）。
+ */
+public class JfrMetricsListener implements MetricsListener {
+
+    @Override
+    public void phase(Phase phase, long nanos, int count) {
+        PhaseEvent event = new PhaseEvent();
+        if (event.isEnabled()) {
+            event.phase = phase.name();
+            event.nanos = nanos;
+            event.count = count;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void decrypt(long nanos, int pairings, int leavesVisited, int gatesShortCircuited, boolean satisfied) {
+        DecryptEvent event = new DecryptEvent();
+        if (event.isEnabled()) {
+            event.nanos = nanos;
+            event.pairings = pairings;
+            event.leavesVisited = leavesVisited;
+            event.gatesShortCircuited = gatesShortCircuited;
+            event.satisfied = satisfied;
+            event.commit();
+        }
+    }
+
+    @Name("kpabe.Phase")
+    @Label("KP-ABE Phase")
+    @Category("KP-ABE")
+    static class PhaseEvent extends Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+
+        @Label("Operations")
+        int count;
+    }
+
+    @Name("kpabe.Decrypt")
+    @Label("KP-ABE Decrypt")
+    @Category("KP-ABE")
+    static class DecryptEvent extends Event {
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long nanos;
+
+        @Label("Pairings")
+        int pairings;
+
+        @Label("Leaves Visited")
+        int leavesVisited;
+
+        @Label("Gates Short-Circuited")
+        int gatesShortCircuited;
+
+        @Label("Satisfied")
+        boolean satisfied;
+    }
+}
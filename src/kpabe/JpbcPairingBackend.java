@@ -0,0 +1,109 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.jpbc.PairingParameters;
+import it.unisa.dia.gas.jpbc.PairingPreProcessing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+import it.unisa.dia.gas.plaf.jpbc.pairing.f.TypeFCurveGenerator;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.function.UnaryOperator;
+
+/**
+ * 基于jPBC的配对后端，支持jPBC的各种曲线类型：
+ *   type a：对称配对，q为512位的超奇异曲线（a.properties），元素较大；
+ *   type f：Barreto-Naehrig (BN) 曲线上的非对称配对，G1元素长度与群阶r相当，配对和G1上的幂运算都明显更快。
+ * 同一套KPABE代码和jmh目录下的基准可以直接比较不同参数文件。
+ * 对称配对中keyPairing为Di做配对预处理（Miller循环中只与Di相关的部分）；非对称配对中Di位于G2，
+ * jPBC只能预处理第一个参数（G1），因此直接计算 e(Ei,Di)。
+ * 用法：java kpabe.JpbcPairingBackend [输出文件名] [r的位数]，生成Type F (BN) 曲线参数文件
+ */
+public class JpbcPairingBackend implements PairingBackend {
+    private final Pairing bp;
+    private final String type;
+
+    private JpbcPairingBackend(Pairing bp, String type) {
+        this.bp = bp;
+        this.type = type;
+    }
+
+    /**
+     * @param pairingParametersFileName
+     * @return
+     */
+    public static JpbcPairingBackend load(String pairingParametersFileName) {
+        PairingParameters params = PairingFactory.getPairingParameters(pairingParametersFileName);
+        return new JpbcPairingBackend(PairingFactory.getPairing(params), params.getString("type"));
+    }
+
+    @Override
+    public Pairing getPairing() {
+        return bp;
+    }
+
+    @Override
+    public String getName() {
+        String curve = "f".equals(type) ? "Type F (BN)" : "Type " + type.toUpperCase();
+        return "jPBC " + curve + (bp.isSymmetric() ? " (symmetric)" : " (asymmetric)");
+    }
+
+    @Override
+    public boolean isSymmetric() {
+        return bp.isSymmetric();
+    }
+
+    @Override
+    public Field<?> ciphertextGroup() {
+        return bp.getG1();
+    }
+
+    @Override
+    public Field<?> keyGroup() {
+        return bp.getG2();
+    }
+
+    @Override
+    public Element pairing(Element E, Element D) {
+        return bp.pairing(E, D);
+    }
+
+    @Override
+    public Element pairing(Element[] E, Element[] D) {
+        return bp.pairing(E, D);
+    }
+
+    @Override
+    public UnaryOperator<Element> keyPairing(Element D) {
+        if (!bp.isSymmetric()) {
+            return E -> bp.pairing(E, D).getImmutable();
+        }
+        PairingPreProcessing pp = bp.getPairingPreProcessingFromElement(D);
+        return E -> pp.pairing(E).getImmutable();
+    }
+
+    /**
+     * 生成Type F (BN) 曲线参数文件
+     * @param rBits 群阶r的位数，例如160或254
+     * @param fileName
+     * @throws KPABEException 写入失败
+     */
+    public static void generateTypeF(int rBits, String fileName) {
+        PairingParameters params = new TypeFCurveGenerator(rBits).generate();
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write(params.toString());
+        }
+        catch (IOException e) {
+            throw new KPABEException(fileName + " save failed!", e);
+        }
+    }
+
+    public static void main(String[] args) {
+        String fileName = args.length > 0 ? args[0] : "f.properties";
+        int rBits = args.length > 1 ? Integer.parseInt(args[1]) : 254;
+        generateTypeF(rBits, fileName);
+        System.out.println(load(fileName).getName() + " parameters written to " + fileName);
+    }
+}
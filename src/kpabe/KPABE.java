@@ -0,0 +1,730 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.plaf.jpbc.pairing.PairingFactory;
+
+import java.io.*;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.lang.Integer.valueOf;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.math.BigInteger;
+
+
+
+public class KPABE {
+    // nodeRecover的逐节点调试输出和解密时访问树不被满足的提示，在FINE级别记录
+    private static final Logger LOG = Logger.getLogger(KPABE.class.getName());
+
+    /**
+     * setup、keygen、encrypt写出的文件格式；keygen、encrypt、decrypt读取时自动识别这几种格式
+     */
+    public enum FileFormat {
+        // Base64编码的Properties文本文件
+        PROPERTIES,
+        // BinaryFormat二进制格式
+        BINARY,
+        // BinaryFormat二进制格式，G1、G2元素以压缩点形式存放
+        BINARY_COMPRESSED
+    }
+
+    /**
+     * 初始化
+     * @param pairingParametersFileName
+     * @param U
+     * @param pkFileName
+     * @param mskFileName
+     */
+    public static void setup(String pairingParametersFileName, int U, String pkFileName, String mskFileName) {
+        setup(pairingParametersFileName, U, pkFileName, mskFileName, null);
+    }
+
+    /**
+     * 初始化 -- 各属性的ti、Ti在线程池中分块并行生成，写入文件的内容与串行生成的格式相同
+     * @param pairingParametersFileName
+     * @param U
+     * @param pkFileName
+     * @param mskFileName
+     * @param executor 为null时串行生成；线程池由调用者负责关闭
+     */
+    public static void setup(String pairingParametersFileName, int U, String pkFileName, String mskFileName, ExecutorService executor) {
+        setup(pairingParametersFileName, U, pkFileName, mskFileName, executor, FileFormat.PROPERTIES);
+    }
+
+    /**
+     * 初始化 -- 按指定格式写出公钥和主密钥文件
+     * @param pairingParametersFileName
+     * @param U
+     * @param pkFileName
+     * @param mskFileName
+     * @param executor 为null时串行生成；线程池由调用者负责关闭
+     * @param format
+     */
+    public static void setup(String pairingParametersFileName, int U, String pkFileName, String mskFileName, ExecutorService executor, FileFormat format) {
+        //输入为 < 相关初始化参数文件名，属性全集U（整数），公钥集文件名，主密钥集文件名 >
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);  //根据曲线参数文件选择配对后端
+        Pairing bp = backend.getPairing();  //从文件导入椭圆曲线参数，生成Pairing实例
+        Element g = backend.ciphertextGroup().newRandomElement().getImmutable();   //基于基本参数，从G1乘法循环群中随机选取Element整数生成元g（阶数）
+        //私钥位于G2：对称配对中G2=G1，取g2=g；非对称配对中另取G2的生成元g2
+        Element g2 = backend.isSymmetric() ? g : backend.keyGroup().newRandomElement().getImmutable();
+        ElementPowPreProcessing gTable = g.getElementPowPreProcessing();  //g是固定底数，建立预计算表加速U次g^ti
+
+        Properties mskProp = new Properties();  //新建Properties类以便生成对应主密钥msk封装文件
+        Properties pkProp = new Properties();  //新建Properties类以便生成对应公钥pk封装文件
+        //属性表示为1，2，3，...，U
+        //对每个属性i，选取一个随机数ti作为该属性对应的主密钥，并计算相应公钥g^ti
+        Element[] ts = new Element[U];
+        Element[] Ts = new Element[U];
+        ParallelTasks.forEach(executor, U, i -> {
+            ts[i] = bp.getZr().newRandomElement().getImmutable();  //Element整数ti需要从加法循环群Zp中随机选取
+            Ts[i] = gTable.powZn(ts[i]).getImmutable();    //Element整数Ti=g^ti
+        });
+        for (int i = 1; i <= U; i++){
+            Element t = ts[i-1];
+            Element T = Ts[i-1];
+            mskProp.setProperty("t"+i, Base64.getEncoder().withoutPadding().encodeToString(t.toBytes()));
+            pkProp.setProperty("T"+i, Base64.getEncoder().withoutPadding().encodeToString(T.toBytes()));
+            //将所得ti、Ti转换为字符串形式并进行Base64编码，并存入对应主密钥、公钥文件中
+        }
+        //另外选取一个随机数y，计算e(g,g)^y
+        Element y = bp.getZr().newRandomElement().getImmutable();   //Element整数y需要从加法循环群Zp中随机选取
+        Element egg_y = backend.pairing(g, g2).powZn(y).getImmutable();  //基于椭圆曲线基本参数计算Y=egg_y=e(g,g2)^y
+
+        //将msk和pk存储到相应的文件中
+        mskProp.setProperty("y", Base64.getEncoder().withoutPadding().encodeToString(y.toBytes()));
+        pkProp.setProperty("egg_y", Base64.getEncoder().withoutPadding().encodeToString(egg_y.toBytes()));
+        pkProp.setProperty("g", Base64.getEncoder().withoutPadding().encodeToString(g.toBytes()));
+        if (!backend.isSymmetric()) {
+            pkProp.setProperty("g2", Base64.getEncoder().withoutPadding().encodeToString(g2.toBytes()));
+        }
+        //将所得y、Y=egg_y=e(g,g)^y、g转换为字符串形式并进行Base64编码，并存入对应主密钥、公钥、公钥文件中
+        //注意区分数据类型。上面写的数据类型群元素，因此使用了Base64编码。
+
+        Map<Integer, Element> tMap = new HashMap<Integer, Element>();
+        Map<Integer, Element> TMap = new HashMap<Integer, Element>();
+        for (int i = 1; i <= U; i++) {
+            tMap.put(i, ts[i-1]);
+            TMap.put(i, Ts[i-1]);
+        }
+        storeToFile(mskProp, () -> BinaryFormat.encodeMasterKey(new MasterKey(y, tMap)), format, mskFileName);  //封装进对应文件
+        storeToFile(pkProp, () -> BinaryFormat.encodePublicKey(new PublicKey(g, g2, egg_y, TMap), format == FileFormat.BINARY_COMPRESSED), format, pkFileName);  //封装进对应文件
+
+        //输出：系统主密钥文件 msk = { t1, t2, ..., t|U|, y }，公钥文件 pk = { T1, T2, ..., T|U|, Y, g }
+    }
+
+    /**
+     * 密钥生成 -- 与访问控制树相关联
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param mskFileName
+     * @param skFileName
+     * @throws NoSuchAlgorithmException
+     * @throws IllegalArgumentException 访问控制树无效，或者叶子是字符串属性
+     */
+    public static void keygen(String pairingParametersFileName, Node[] accessTree, String pkFileName, String mskFileName, String skFileName) throws NoSuchAlgorithmException {
+        keygen(pairingParametersFileName, accessTree, pkFileName, mskFileName, skFileName, FileFormat.PROPERTIES);
+    }
+
+    /**
+     * 密钥生成 -- 按指定格式写出私钥文件
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param mskFileName
+     * @param skFileName
+     * @param format
+     * @throws NoSuchAlgorithmException
+     * @throws IllegalArgumentException 访问控制树无效，或者叶子是字符串属性
+     */
+    public static void keygen(String pairingParametersFileName, Node[] accessTree, String pkFileName, String mskFileName, String skFileName, FileFormat format) throws NoSuchAlgorithmException {
+        //输入为 < 相关初始化参数文件名，访问控制树，公钥文件名，主密钥文件名，私钥文件名 >
+        AccessPolicy.compile(accessTree);  //先检查访问树，字符串属性的叶子会被拒绝，而不是被当作属性0
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);  //根据曲线参数文件选择配对后端
+        Pairing bp = backend.getPairing();  //从文件导入椭圆曲线参数，生成Pairing实例
+
+        Properties pkProp = loadPropFromFile(pkFileName, bp);  //从对应公钥pk封装文件载入公钥Properties实例
+        String gString = pkProp.getProperty("g2", pkProp.getProperty("g"));  //从对应公钥pk文件中获取私钥所在群的生成元g2，对称配对中g2=g
+        Element g = backend.keyGroup().newElementFromBytes(Base64.getDecoder().decode(gString)).getImmutable();
+        //将Base64编码后的字符串g解码转换成Element类整数
+        ElementPowPreProcessing gTable = g.getElementPowPreProcessing();  //每个叶子节点都要计算g^(q/t)，建立g的预计算表
+
+        Properties mskProp = loadPropFromFile(mskFileName, bp);  //从对应主密钥msk封装文件载入主密钥Properties实例
+        String yString = mskProp.getProperty("y");  //从对应主密钥msk文件中获取随机数密钥y值
+        Element y = bp.getZr().newElementFromBytes(Base64.getDecoder().decode(yString)).getImmutable();
+        //将Base64编码后的字符串y解码转换成Element类整数
+
+        //先设置根节点要共享的秘密值
+        accessTree[0].secretShare = y;
+        //进行共享，使得每个叶子节点获得响应的秘密分片，使用编写的节点共享函数nodeShare()
+        nodeShare(accessTree, accessTree[0], bp);
+        //输入为 < 访问控制树的所有节点，根节点or要分享秘密的节点，Pairing实例 >
+        //实质上是利用拉格朗日差值算法计算每个子节点的q(i)即秘密值，qi(0)=q(0)=y，并输出 < 分享秘密后的访问控制树的所有节点 >
+        //解密时最后求出首项y=q(0)
+
+        Properties skProp = new Properties();  //新建Properties类以便生成对应私钥sk封装文件
+        Map<Integer, Element> DMap = new HashMap<Integer, Element>();
+
+        //计算用户属性中每个属性对应的私钥Dx=g^(qx(i)/ti)，qx(i)是多项式在该属性i位置的值，ti是属性对应的主密钥
+        for (Node node : accessTree) {
+            if (node.isLeaf()) {
+                // 对于每个叶子节点，先获取对应的主秘钥组件t，然后计算秘钥组件。
+                String tString = mskProp.getProperty("t"+node.att);  //从对应主密钥msk文件中获取对应ti的字符串
+                Element t = bp.getZr().newElementFromBytes(Base64.getDecoder().decode(tString)).getImmutable();
+                //将Base64编码后的字符串t解码转换成Element类整数
+                Element q = node.secretShare;  //获取该节点的共享的秘密值
+                Element D = gTable.powZn(q.div(t)).getImmutable();  //计算Element类整数值Di=g^(q(i)/ti)
+                skProp.setProperty("D"+node.att, Base64.getEncoder().withoutPadding().encodeToString(D.toBytes()));
+                //将所得Di转换为字符串形式并进行Base64编码，并存入对应私钥文件中
+                DMap.put(node.att, D);
+            }
+        }
+        //将用户访问树也添加在私钥中
+        //如何进行序列化和反序列化
+        //skProp.setProperty("userAttList", Arrays.toString(accessTree));
+        storeToFile(skProp, () -> BinaryFormat.encodeDecryptionKey(new DecryptionKey(DMap), format == FileFormat.BINARY_COMPRESSED), format, skFileName);  //封装进对应文件
+
+        //输出：私钥文件 sk = { Di } (i∈userAttList)
+    }
+
+    /**
+     * 密钥生成 -- 按子树并行共享秘密并并行计算各叶子的私钥组件
+     * 秘密分片保存在临时数组中，不写入accessTree，同一棵访问控制树可以同时用于多次密钥生成
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param mskFileName
+     * @param skFileName
+     * @param pool 线程池由调用者负责关闭
+     * @throws NoSuchAlgorithmException
+     * @throws IllegalArgumentException 访问控制树无效，或者叶子是字符串属性
+     */
+    public static void keygen(String pairingParametersFileName, Node[] accessTree, String pkFileName, String mskFileName, String skFileName, ForkJoinPool pool) throws NoSuchAlgorithmException {
+        keygen(pairingParametersFileName, accessTree, pkFileName, mskFileName, skFileName, pool, FileFormat.PROPERTIES);
+    }
+
+    /**
+     * 密钥生成 -- 并行计算，按指定格式写出私钥文件
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param mskFileName
+     * @param skFileName
+     * @param pool 线程池由调用者负责关闭
+     * @param format
+     * @throws NoSuchAlgorithmException
+     * @throws IllegalArgumentException 访问控制树无效，或者叶子是字符串属性
+     */
+    public static void keygen(String pairingParametersFileName, Node[] accessTree, String pkFileName, String mskFileName, String skFileName, ForkJoinPool pool, FileFormat format) throws NoSuchAlgorithmException {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);  //根据曲线参数文件选择配对后端
+        Pairing bp = backend.getPairing();  //从文件导入椭圆曲线参数，生成Pairing实例
+
+        Properties pkProp = loadPropFromFile(pkFileName, bp);  //从对应公钥pk封装文件载入公钥Properties实例
+        Element g = backend.keyGroup().newElementFromBytes(Base64.getDecoder().decode(pkProp.getProperty("g2", pkProp.getProperty("g")))).getImmutable();
+        ElementPowPreProcessing gTable = g.getElementPowPreProcessing();
+
+        Properties mskProp = loadPropFromFile(mskFileName, bp);  //从对应主密钥msk封装文件载入主密钥Properties实例
+        Element y = bp.getZr().newElementFromBytes(Base64.getDecoder().decode(mskProp.getProperty("y"))).getImmutable();
+
+        //各子树并行共享秘密，shares[i]为节点i的秘密分片
+        Element[] shares = TreeTasks.share(AccessPolicy.compile(accessTree), y, bp, pool);
+
+        //各叶子节点的私钥组件Di=g^(q(i)/ti)互不相关，并行计算
+        int[] leaves = IntStream.range(0, accessTree.length).filter(i -> accessTree[i].isLeaf()).toArray();
+        Element[] Ds = new Element[leaves.length];
+        ParallelTasks.forEach(pool, leaves.length, k -> {
+            Node node = accessTree[leaves[k]];
+            Element t = bp.getZr().newElementFromBytes(Base64.getDecoder().decode(mskProp.getProperty("t"+node.att))).getImmutable();
+            Ds[k] = gTable.powZn(shares[leaves[k]].div(t)).getImmutable();
+        });
+
+        Properties skProp = new Properties();  //新建Properties类以便生成对应私钥sk封装文件
+        Map<Integer, Element> DMap = new HashMap<Integer, Element>();
+        for (int k = 0; k < leaves.length; k++) {
+            skProp.setProperty("D"+accessTree[leaves[k]].att, Base64.getEncoder().withoutPadding().encodeToString(Ds[k].toBytes()));
+            DMap.put(accessTree[leaves[k]].att, Ds[k]);
+        }
+        storeToFile(skProp, () -> BinaryFormat.encodeDecryptionKey(new DecryptionKey(DMap), format == FileFormat.BINARY_COMPRESSED), format, skFileName);  //封装进对应文件
+    }
+
+    /**
+     * 加密 -- 与属性集相关联
+     * @param pairingParametersFileName
+     * @param message
+     * @param messageAttList
+     * @param pkFileName
+     * @param ctFileName
+     */
+    public static void encrypt(String pairingParametersFileName, Element message, int[] messageAttList, String pkFileName, String ctFileName) {
+        encrypt(pairingParametersFileName, message, messageAttList, pkFileName, ctFileName, FileFormat.PROPERTIES);
+    }
+
+    /**
+     * 加密 -- 按指定格式写出密文文件
+     * @param pairingParametersFileName
+     * @param message
+     * @param messageAttList
+     * @param pkFileName
+     * @param ctFileName
+     * @param format
+     */
+    public static void encrypt(String pairingParametersFileName, Element message, int[] messageAttList, String pkFileName, String ctFileName, FileFormat format) {
+        //输入为 < 相关初始化参数文件名，Element类明文信息（GT上一点），明文属性集，公钥文件名，密文文件名 >
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);  //根据曲线参数文件选择配对后端
+        Pairing bp = backend.getPairing();  //从文件导入椭圆曲线参数，生成Pairing实例
+
+        Properties pkProp = loadPropFromFile(pkFileName, bp);  //从对应公钥pk封装文件载入公钥Properties实例
+        String eggString = pkProp.getProperty("egg_y");  //从对应公钥pk文件中获取公钥egg_y=Y=e(g,g)^y
+        Element egg_y = bp.getGT().newElementFromBytes(Base64.getDecoder().decode(eggString)).getImmutable();
+        //将Base64编码后的字符串egg_y解码转换成Element类整数
+
+        //计算密文组件 E'=EP=Me(g,g)^(ys)
+        Element s = bp.getZr().newRandomElement().getImmutable();  //选取随机Element类整数s∈Zp
+        Element EP = message.duplicate().mul(egg_y.powZn(s)).getImmutable();
+        //计算Element类整数E'=EP=M(Y^s)=Me(g,g)^(ys)（M点进行双线性映射得到整数）
+
+        Properties ctProp = new Properties();  //新建Properties类以便生成对应密文ct封装文件
+        Map<Integer, Element> EMap = new LinkedHashMap<Integer, Element>();
+        //针对每个密文属性，计算密文组件 Ei=Ti^s
+        for (int att : messageAttList) {
+            String TString = pkProp.getProperty("T"+att);  //从对应公钥pk文件中获取对应Ti的字符串
+            Element T = backend.ciphertextGroup().newElementFromBytes(Base64.getDecoder().decode(TString)).getImmutable();
+            //将Base64编码后的字符串Ti解码转换成Element类整数
+            Element E = T.powZn(s).getImmutable();
+            //针对每个明文属性，计算密文组件Element类整数 Ei=Ti^s
+
+            ctProp.setProperty("E"+att, Base64.getEncoder().withoutPadding().encodeToString(E.toBytes()));
+            //将所得密文组件Ei转换为字符串形式并进行Base64编码，并存入对应密文文件中
+            EMap.put(att, E);
+        }
+        ctProp.setProperty("EP", Base64.getEncoder().withoutPadding().encodeToString(EP.toBytes()));
+        //将Element类整数EP=M(Y^s)=Me(g,g)^(ys)也转换为字符串形式并进行Base64编码，并存入对应密文文件中
+
+        //明文属性列表messageAttList也添加至密文文件中
+        ctProp.setProperty("messageAttList", Arrays.toString(messageAttList));
+        storeToFile(ctProp, () -> BinaryFormat.encodeCiphertext(new Ciphertext(messageAttList, EP, EMap), format == FileFormat.BINARY_COMPRESSED), format, ctFileName);//封装进对应文件
+
+        //输出：密文文件 ct = < E'=EP, {Ei}(i∈messageAttList) , messageAttList >
+    }
+
+    /**
+     * 解密
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param ctFileName
+     * @param skFileName
+     * @return
+     */
+    public static Element decrypt(String pairingParametersFileName, Node[] accessTree, String pkFileName, String ctFileName, String skFileName) {
+        //输入为 < 相关初始化参数文件名，访问控制树，公钥文件名，密文文件名，私钥文件名 >
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);  //根据曲线参数文件选择配对后端
+        Pairing bp = backend.getPairing();  //从文件导入椭圆曲线参数，生成Pairing实例
+
+        //解密不需要公钥，pkFileName只为与keygen、encrypt的参数一致而保留
+        long start = System.nanoTime();
+        Properties ctProp = loadPropFromFile(ctFileName, bp);  //从对应密文ct封装文件载入密文Properties实例
+        Metrics.phase(MetricsListener.Phase.KEY_LOAD, start, 1);
+        String messageAttListString = ctProp.getProperty("messageAttList");  //从对应密文ct文件中获取明文属性列表
+        //恢复明文消息的属性列表 int[]类型
+        int[] messageAttList = Arrays.stream(messageAttListString.substring(1, messageAttListString.length()-1).split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+
+        //只根据属性集选出满足访问树的最小叶子集合，访问树不可满足时不做任何配对
+        DecryptionPlan plan = DecryptionPlan.plan(accessTree, messageAttList);
+        if (plan == null) {
+            LOG.fine("The access tree is not satisfied.");
+            return null;
+        }
+
+        long loadStart = System.nanoTime();
+        Properties skProp = loadPropFromFile(skFileName, bp);  //从对应私钥sk封装文件载入私钥Properties实例
+        Metrics.phase(MetricsListener.Phase.KEY_LOAD, loadStart, 1);
+        int[] plannedAttributes = plan.attributes();
+        long decodeStart = System.nanoTime();
+        Element[] Es = new Element[plannedAttributes.length];
+        Element[] Ds = new Element[plannedAttributes.length];
+        for (int k = 0; k < plannedAttributes.length; k++) {
+            String EString = ctProp.getProperty("E"+plannedAttributes[k]);  //从对应密文ct文件中获取密文组件Ei
+            Es[k] = backend.ciphertextGroup().newElementFromBytes(Base64.getDecoder().decode(EString)).getImmutable();
+            //将Base64编码后的字符串Ei解码转换成Element类整数
+            String DString = skProp.getProperty("D"+plannedAttributes[k]);  //从对应私钥sk文件中获取用户每个属性对应的私钥Di
+            Ds[k] = backend.keyGroup().newElementFromBytes(Base64.getDecoder().decode(DString)).getImmutable();
+            //将Base64编码后的字符串Di解码转换成Element类整数
+        }
+        Metrics.phase(MetricsListener.Phase.ELEMENT_DECODE, decodeStart, 2 * plannedAttributes.length);
+        long pairingStart = System.nanoTime();
+        Map<Integer, Element> shares = new HashMap<Integer, Element>();
+        for (int k = 0; k < plannedAttributes.length; k++) {
+            //secretShare=e(Ei,Di)=e(g^( (ti)*s ),g^( qx(0)/(ti) )=e(g,g)^( qx(0)*s )=e(g,g)^sy
+            shares.put(plannedAttributes[k], backend.pairing(Es[k], Ds[k]).getImmutable());
+        }
+        Metrics.phase(MetricsListener.Phase.PAIRING, pairingStart, plannedAttributes.length);
+        // 只有计划中属性对应的叶子节点的秘密值是配对后的结果
+        for (Node node : accessTree) {
+            if (node.isLeaf() && shares.containsKey(node.att)) {
+                node.secretShare = shares.get(node.att);
+            }
+        }
+        // 进行秘密恢复
+        boolean treeOK = nodeRecover(accessTree, accessTree[0], plannedAttributes, bp);
+        Metrics.decrypt(start, plan, plannedAttributes.length, treeOK);
+        //
+        if (treeOK) {
+            String EPString = ctProp.getProperty("EP");  //从对应密文ct文件中获取EP=M(Y^s)=Me(g,g)^(ys)
+            Element EP = bp.getGT().newElementFromBytes(Base64.getDecoder().decode(EPString)).getImmutable();
+            //将Base64编码后的字符串Di解码转换成Element类整数
+
+            //恢复M=EP÷上述连乘结果  //恢复M=EP/denominator=M*e(g,g)^(ys)/e(g,g)^sy=M
+            Element res = EP.div(accessTree[0].secretShare);
+            return res;
+        }
+        else{
+            LOG.fine("The access tree is not satisfied.");
+            return  null;
+        }
+    }
+
+
+    //随机选取多项式参数randomP(d, a0, bp)→{ai}
+    //d-1次多项式表示为q(x)=coef[0] + coef[1]*x^1 + coef[2]*x^2 + coef[d-1]*x^(d-1)
+    //多项式的系数的数据类型为Zr Element，从而是的后续相关计算全部在Zr群上进行
+    //通过随机选取coef参数，来构造d-1次多项式q(x)。约束条件为q(0)=s。
+    public static Element[] randomP(int d, Element s, Pairing bp) {
+        Element[] coef = new Element[d];
+        coef[0] = s;
+        for (int i = 1; i < d; i++){
+            coef[i] = bp.getZr().newRandomElement().getImmutable();
+        }
+        return  coef;
+    }
+
+    //计算多项式函数qx(x, {ai}, bp)→q(x)
+    //计算由coef为系数确定的多项式qx在序号为index点处的值，注意多项式计算在群Zr上进行
+    //使用Horner法则 q(x)=a[0]+x(a[1]+x(a[2]+...+x·a[n-1]))，只需n-1次乘法和加法，不做幂运算
+    public static Element qx(Element index, Element[] coef, Pairing bp){
+        Element res = coef[coef.length-1].duplicate();  //可变的累加器，在原地进行乘法和加法
+        for (int i = coef.length-2; i >= 0; i--){
+            res.mul(index).add(coef[i]);
+        }
+        return res.getImmutable();
+    }
+
+    //批量计算多项式函数qx在多个点处的值，例如一个门限门的所有子节点索引
+    //所有点共用同一个可变的自变量和累加器，每个点只在输出结果时分配一个Element
+    public static Element[] qx(int[] indices, Element[] coef, Pairing bp){
+        Element[] res = new Element[indices.length];
+        Element x = bp.getZr().newElement();
+        Element acc = bp.getZr().newElement();
+        for (int j = 0; j < indices.length; j++){
+            x.set(indices[j]);
+            acc.set(coef[coef.length-1]);
+            for (int i = coef.length-2; i >= 0; i--){
+                acc.mul(x).add(coef[i]);
+            }
+            res[j] = acc.getImmutable();
+        }
+        return res;
+    }
+
+    //计算拉格朗日因子lagrange(i, S, x, bp)→δi
+    //拉格朗日因子计算 i是集合S中的某个元素，x是目标点的x值
+    public static Element lagrange(int i, int[] S, int x, Pairing bp) {
+        Element res = bp.getZr().newOneElement().getImmutable();
+        Element iElement = bp.getZr().newElement(i).getImmutable();
+        Element xElement = bp.getZr().newElement(x).getImmutable();
+        for (int j : S) {
+            if (i != j) {
+                //注意：在循环中重复使用的项一定要用duplicate复制出来使用
+                //这儿xElement和iElement重复使用，但因为前面已经getImmutable所以可以不用duplicate
+                Element numerator = xElement.sub(bp.getZr().newElement(j)); //x-xj
+                Element denominator = iElement.sub(bp.getZr().newElement(j));  //xi-xj
+                res = res.mul(numerator.div(denominator));  //(x-xj)/(xi-xj)的乘积（i≠j)
+            }
+        }
+        return res;
+    }
+
+    // 共享秘密
+    // nodes是整颗树的所有节点，n是要分享秘密的节点
+    //输入为 < 访问控制树的所有节点，根节点or要分享秘密的节点，Pairing实例 >
+    //根节点的q(0)=y
+    public static void nodeShare(Node[] nodes, Node n, Pairing bp){
+        // 如果是叶子节点，则不需要再分享
+        if (!n.isLeaf()){
+            // 如果不是叶子节点，则先生成一个随机多项式，多项式的常数项为当前节点的秘密值（这个值将被用于分享）
+            // 多项式的次数，由节点的gate对应的threshold即门限值t决定
+            Element[] coef = randomP(n.gate[0], n.secretShare, bp);
+            //即：由n节点的门限值为多项式阶数、n节点的秘密值为首项系数a0（=根节点的q(0)=y），随机选取多项式参数{ai}
+
+            // 对于每一个子节点，以子节点的索引i为参数，计算子节点的多项式值q(i)（也就是其对应的秘密分片）
+            // 所有子节点一次批量求值，注意多项式计算在群Zr上进行
+            Element[] childShares = qx(n.children, coef, bp);
+            //q(x)=a[0]+a[1]x+a[2]x^2+...+a[n-1]x^(n-1)
+
+            for (int j=0; j<n.children.length; j++ ){
+                Node childNode = nodes[n.children[j]];
+                childNode.secretShare = childShares[j];
+                // 递归，将该子节点的秘密继续共享下去
+                nodeShare(nodes, childNode, bp);
+            }
+        }
+        //输出为 < 访问分享了秘密后的控制树的所有节点>
+    }
+
+    // 恢复秘密
+    //nodeRecover(Nodes, n,  atts, Pairing bp)→ 节点n是否可以恢复标志，恢复秘密值变为e(g,g)^sy
+    //输入为< 访问控制树，要恢复秘密的节点，明文属性集，Pairing实例 >
+    public static boolean nodeRecover(Node[] nodes, Node n,  int[] atts, Pairing bp) {
+        //对于非叶子节点来说
+        if (!n.isLeaf()) {
+            // 对于内部节点，维护一个子节点索引列表，用于秘密恢复。
+            List<Integer> validChildrenList = new ArrayList<Integer>();
+            int[] validChildren;  //临时列表用来装满足条件的子节点
+            // 遍历每一个子节点看
+            for (int j=0; j<n.children.length; j++){
+                Node childNode = nodes[n.children[j]];  //子节点
+                // 存在子节点且可递归恢复，则递归所有子节点索引列表调用，恢复子节点的秘密值
+                int childIndex = n.children[j];
+                if (nodeRecover(nodes, childNode, atts, bp)){
+                    LOG.fine(() -> "The node with index " + childIndex + " is satisfied!");
+                    validChildrenList.add(valueOf(n.children[j]));
+                    // 如果满足条件的子节点个数已经达到门限值，则跳出循环，不再计算剩余的节点
+                    if (validChildrenList.size() == n.gate[0]) {
+                        n.valid = true;  //表示此节点可以恢复
+                        break;
+                    }
+                }
+                else {
+                    LOG.fine(() -> "The node with index " + childIndex + " is not satisfied!");
+                }
+            }
+            // 如果可恢复的子节点个数等于门限值，则利用子节点的秘密分片恢复当前节点的秘密。
+            if (validChildrenList.size() == n.gate[0]){
+                validChildren = validChildrenList.stream().mapToInt(i->i).toArray();
+                // 利用拉格朗日差值恢复秘密
+                // 注意，此处是在指数因子上做拉格朗日差值
+                Element secret = bp.getGT().newOneElement().getImmutable();
+                long start = System.nanoTime();
+                Element[] deltas = LagrangeCache.compute(validChildren, bp);  //批量计算各子节点的拉格朗日因子，整组只做一次求逆。目标值x为0，即qi(0)的拉格朗日因子。
+                Metrics.phase(MetricsListener.Phase.LAGRANGE, start, 1);
+                start = System.nanoTime();
+                for (int k = 0; k < validChildren.length; k++) {
+                    Element delta = deltas[k];
+                    secret = secret.mul(nodes[validChildren[k]].secretShare.duplicate().powZn(delta)); //基于拉格朗日因子进行指数运算，然后连乘
+                    //计算Pi=e(Di,Ei)^deltai(0)=e(g,g)^sq(i)deltai(0)，并将结果连乘
+                    //实际上得到denominator=连乘Pi=e(g,g)^(s·(求和q(i)deltai(0)))===e(g,g)^sq(0)=e(g,g)^sy
+                }
+                Metrics.phase(MetricsListener.Phase.GT_EXPONENTIATION, start, validChildren.length);
+                n.secretShare = secret;  //=e(g,g)^sy
+            }
+        }
+        else {
+            // 判断叶子节点的属性值是否属于属性列表
+            // 判断一个元素是否属于数组，注意String类型和int类型的判断方式不同
+            if (Arrays.stream(atts).boxed().collect(Collectors.toList()).contains(n.att)){
+                n.valid = true;
+            }
+        }
+        return n.valid;
+    }
+
+    /**
+     * @param prop
+     * @param fileName
+     * @throws KPABEException 写入失败
+     */
+    public static void storePropToFile(Properties prop, String fileName){
+        try(FileOutputStream out = new FileOutputStream(fileName)){
+            prop.store(out, null);
+        }
+        catch (IOException e) {
+            throw new KPABEException(fileName + " save failed!", e);
+        }
+    }
+
+    /**
+     * @param fileName
+     * @return
+     * @throws KPABEException 读取失败
+     */
+    public static Properties loadPropFromFile(String fileName) {
+        Properties prop = new Properties();
+        try (FileInputStream in = new FileInputStream(fileName)){
+            prop.load(in);
+        }
+        catch (IOException e){
+            throw new KPABEException(fileName + " load failed!", e);
+        }
+        return prop;
+    }
+
+
+    /**
+     * 读取pk、msk、sk、ct文件，BinaryFormat二进制格式的内容转换为与Properties文本文件相同的Properties
+     * @param fileName
+     * @param bp
+     * @return
+     * @throws KPABEException 读取失败
+     */
+    public static Properties loadPropFromFile(String fileName, Pairing bp) {
+        return BinaryFormat.toProperties(loadBytesFromFile(fileName), bp);
+    }
+
+    // PROPERTIES格式写出prop，二进制格式写出binary的编码结果
+    private static void storeToFile(Properties prop, Supplier<byte[]> binary, FileFormat format, String fileName) {
+        if (format == FileFormat.PROPERTIES) {
+            storePropToFile(prop, fileName);
+            return;
+        }
+        try {
+            Files.write(Paths.get(fileName), binary.get());
+        }
+        catch (IOException e) {
+            throw new KPABEException(fileName + " save failed!", e);
+        }
+    }
+
+    /**
+     * @param fileName
+     * @return
+     * @throws KPABEException 读取失败
+     */
+    public static byte[] loadBytesFromFile(String fileName) {
+        try {
+            return Files.readAllBytes(Paths.get(fileName));
+        }
+        catch (IOException e){
+            throw new KPABEException(fileName + " load failed!", e);
+        }
+    }
+
+
+    // 从文件中读取明文字符串消息
+    private static String readPlaintextFromFile(String fileName) {
+        StringBuilder plaintext = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                plaintext.append(line);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return plaintext.toString();
+    }
+
+    // 将明文字符串写入文件的方法
+    public static void writePlainTextToFile(String plainText, String filePath) {
+        try {
+            // 创建一个文件写入器
+            FileWriter writer = new FileWriter(filePath);
+            // 写入明文字符串到文件
+            writer.write(plainText);
+            // 关闭写入器
+            writer.close();
+            System.out.println("PlainText successfully written to file: " + filePath);
+        } catch (IOException e) {
+            // 捕获异常并打印错误信息
+            System.err.println("Error writing to file: " + e.getMessage());
+        }
+    }
+
+
+
+
+    public static void main(String[] args) throws Exception {
+        int U = 20;
+        int[] messageAttList = {1, 2, 4, 5};
+        //int[] messageAttList = {1, 2};
+        Node[] accessTree = new Node[7];  //访问树大小
+        accessTree[0] = new Node(new int[]{2,3}, new int[]{1,2,3});  //构造内部根节点：gate:{门限值2，子节点个数为3};子节点索引列表：{1,2,3}
+        accessTree[1] = new Node(1);  // 索引1，叶子节点，属性值1
+        accessTree[2] = new Node(new int[]{2,3}, new int[]{4,5,6});  //索引2，内部节点，gate:{门限值2，子节点个数为3};子节点索引列表：{4,5,6}
+        accessTree[3] = new Node(5);  // 索引3，叶子节点，属性值5
+        accessTree[4] = new Node(2);  // 索引4，叶子节点，属性值2
+        accessTree[5] = new Node(3);  // 索引5，叶子节点，属性值3
+        accessTree[6] = new Node(4);  // 索引6，叶子节点，属性值4
+
+//        int[] messageAttList = {1};
+//        Node[] accessTree = new Node[3];
+//        accessTree[0] = new Node(new int[]{2,2}, new int[]{1,2});
+//        accessTree[1] = new Node(1);
+//        accessTree[2] = new Node(2);
+
+        String dir = "data/";
+        String pairingParametersFileName = args.length > 0 ? args[0] : "a.properties";  //可以传入其他曲线参数文件，例如Type F (BN) 曲线
+        String pkFileName = dir + "pk.properties";
+        String mskFileName = dir + "msk.properties";
+        String skFileName = dir + "sk.properties";
+        String ctFileName = dir + "ct.properties";
+
+        String inputFileName = dir + "input.txt"; // 输入文件名
+        String outputFileName = dir + "output.txt"; // 输入文件名
+
+
+        setup(pairingParametersFileName, U, pkFileName, mskFileName);
+
+        keygen(pairingParametersFileName, accessTree, pkFileName, mskFileName, skFileName);
+
+
+    //    Element message = PairingFactory.getPairing(pairingParametersFileName).getGT().newRandomElement().getImmutable();
+
+    //    System.out.println("明文消息:" + message);
+    //    encrypt(pairingParametersFileName, message, messageAttList, pkFileName, ctFileName);
+
+    //    Element res = decrypt(pairingParametersFileName, accessTree, pkFileName, ctFileName, skFileName);
+    //            System.out.println("解密结果:" + res);
+    //            if (message.isEqual(res)) {
+    //                System.out.println("成功解密！");
+    //            }
+
+        // 读取明文字符串消息
+        String plaintext = readPlaintextFromFile(inputFileName);
+        System.out.println("明文消息: " + plaintext);
+
+        // 混合加密：ABE只加密一个随机的GT元素K，文件内容用由K派生的AES-GCM密钥流式加密
+        // 直接把明文编码为GT元素时超出一个元素长度的部分会丢失，混合加密对明文长度没有限制
+        String hybridFileName = dir + "input.txt.kpabe";
+        KPABEEngine engine = new KPABEEngine(pairingParametersFileName, pkFileName);
+        HybridCipher hybrid = new HybridCipher(engine);
+        try (FileChannel in = FileChannel.open(Paths.get(inputFileName), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(Paths.get(hybridFileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            hybrid.encrypt(messageAttList, in, out);
+        }
+
+        Decryptor decryptor = engine.newDecryptor(engine.loadDecryptionKey(skFileName));
+        boolean treeOK;
+        try (FileChannel in = FileChannel.open(Paths.get(hybridFileName), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(Paths.get(outputFileName), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            treeOK = hybrid.decrypt(decryptor, AccessPolicy.compile(accessTree), in, out);
+        }
+
+        if (!treeOK) {
+            System.out.println("The access tree is not satisfied.");
+        }
+        else {
+            // 打印解密后的明文字符串
+            System.out.println("Decrypted plaintext: " + readPlaintextFromFile(outputFileName));
+            if (Arrays.equals(Files.readAllBytes(Paths.get(inputFileName)), Files.readAllBytes(Paths.get(outputFileName)))) {
+                System.out.println("成功解密！");
+            }
+        }
+    }
+}
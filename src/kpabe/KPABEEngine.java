@@ -0,0 +1,271 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+/**
+ * 常驻内存的KP-ABE引擎
+ * 只在构造时读取一次椭圆曲线参数文件和公钥文件，之后缓存配对后端、g、egg_y以及每个属性的Ti，
+ * encrypt/decrypt不再访问文件系统。所有缓存的群元素都是不可变的，因此实例可以被多个线程同时使用。
+ * g和egg_y的固定底数预计算表在构造时建立，Ti的预计算表按需建立并放入受内存预算限制的LRU缓存。
+ * 指定线程池时，加密中各属性的 Ti^s 分块并行计算，密文组件的顺序与串行计算相同。
+ * 属性全集很大时可以改用MappedPublicKeyStore，按属性值逐个读取Ti而不解码整个公钥。
+ */
+public class KPABEEngine {
+    private final PairingBackend backend;
+    private final Pairing bp;
+    private final Element g;
+    private final Element egg_y;
+    // 按属性值查找公钥组件 Ti=g^ti，属性不存在时返回null
+    private final IntFunction<Element> T;
+
+    // 固定底数预计算表
+    private final ElementPowPreProcessing gTable;
+    private final ElementPowPreProcessing eggTable;
+    private final PowTableCache TTables;
+
+    // 用于并行计算密文组件的线程池，为null时串行计算
+    private final ExecutorService executor;
+
+    // 由本引擎解密和建立的解密器共享的拉格朗日因子缓存
+    private final LagrangeCache lagrange;
+
+    /**
+     * 使用默认内存预算缓存Ti的预计算表
+     * @param pairingParametersFileName
+     * @param pkFileName
+     */
+    public KPABEEngine(String pairingParametersFileName, String pkFileName) {
+        this(pairingParametersFileName, pkFileName, PowTableCache.DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param tableMemoryBudget Ti预计算表允许占用的内存（字节），为0时不为Ti建表
+     */
+    public KPABEEngine(String pairingParametersFileName, String pkFileName, long tableMemoryBudget) {
+        this(pairingParametersFileName, pkFileName, tableMemoryBudget, null);
+    }
+
+    /**
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param tableMemoryBudget Ti预计算表允许占用的内存（字节），为0时不为Ti建表
+     * @param executor 并行计算密文组件的线程池（ForkJoinPool、虚拟线程池等），为null时串行计算；线程池由调用者负责关闭
+     */
+    public KPABEEngine(String pairingParametersFileName, String pkFileName, long tableMemoryBudget, ExecutorService executor) {
+        this(PairingBackend.forParameters(pairingParametersFileName), pkFileName, tableMemoryBudget, executor);
+    }
+
+    private KPABEEngine(PairingBackend backend, String pkFileName, long tableMemoryBudget, ExecutorService executor) {
+        //一次性解码全部Ti，公钥文件可以是pk.properties格式或二进制格式
+        this(backend, PublicKey.load(pkFileName, backend.getPairing()), tableMemoryBudget, executor);
+    }
+
+    /**
+     * @param backend
+     * @param pk 已解码的公钥
+     * @param tableMemoryBudget Ti预计算表允许占用的内存（字节），为0时不为Ti建表
+     * @param executor 并行计算密文组件的线程池，为null时串行计算；线程池由调用者负责关闭
+     */
+    public KPABEEngine(PairingBackend backend, PublicKey pk, long tableMemoryBudget, ExecutorService executor) {
+        this(backend, pk.g, pk.egg_y, pk.T::get, tableMemoryBudget, executor);
+    }
+
+    /**
+     * 使用内存映射公钥文件，Ti在首次用到时才从文件中读取
+     * @param backend
+     * @param store 由调用者负责关闭
+     * @param tableMemoryBudget Ti预计算表允许占用的内存（字节），为0时不为Ti建表
+     * @param executor 并行计算密文组件的线程池，为null时串行计算；线程池由调用者负责关闭
+     */
+    public KPABEEngine(PairingBackend backend, MappedPublicKeyStore store, long tableMemoryBudget, ExecutorService executor) {
+        this(backend, store.getG(), store.getEggY(), store::get, tableMemoryBudget, executor);
+    }
+
+    private KPABEEngine(PairingBackend backend, Element g, Element egg_y, IntFunction<Element> T, long tableMemoryBudget, ExecutorService executor) {
+        this.executor = executor;
+        this.backend = backend;
+        this.bp = backend.getPairing();
+        this.g = g;
+        this.egg_y = egg_y;
+        this.T = T;
+
+        this.gTable = g.getElementPowPreProcessing();
+        this.eggTable = egg_y.getElementPowPreProcessing();
+        this.TTables = new PowTableCache(tableMemoryBudget, PowTableCache.estimateTableBytes(backend.ciphertextGroup(), bp.getZr()));
+        this.lagrange = new LagrangeCache(bp);
+    }
+
+    public PairingBackend getBackend() {
+        return backend;
+    }
+
+    public Pairing getPairing() {
+        return bp;
+    }
+
+    public Element getG() {
+        return g;
+    }
+
+    public Element getEggY() {
+        return egg_y;
+    }
+
+    /**
+     * 利用预计算表计算 g^exp
+     * @param exp
+     * @return
+     */
+    public Element powG(Element exp) {
+        return gTable.powZn(exp).getImmutable();
+    }
+
+    /**
+     * 预先为给定属性建立Ti的预计算表，避免首次加密时的建表延迟
+     * @param atts
+     */
+    public void prepareAttributes(int[] atts) {
+        Element one = bp.getZr().newOneElement().getImmutable();
+        for (int att : atts) {
+            TTables.powZn(att, this::publicComponent, one);
+        }
+    }
+
+    /**
+     * 读取并解码私钥文件（properties或二进制格式），返回的私钥可以在多次解密中重复使用
+     * @param skFileName
+     * @return
+     */
+    public DecryptionKey loadDecryptionKey(String skFileName) {
+        return DecryptionKey.load(skFileName, bp);
+    }
+
+    /**
+     * 为给定私钥建立解密器，用同一私钥反复解密时应使用解密器而不是decrypt(accessTree, ct, sk)
+     * @param sk
+     * @return
+     */
+    public Decryptor newDecryptor(DecryptionKey sk) {
+        return new Decryptor(backend, sk, null, lagrange);
+    }
+
+    /**
+     * 为给定私钥建立按子树并行恢复的解密器
+     * @param sk
+     * @param pool
+     * @return
+     */
+    public Decryptor newDecryptor(DecryptionKey sk, ForkJoinPool pool) {
+        return new Decryptor(backend, sk, pool, lagrange);
+    }
+
+    /**
+     * 读取并解码密文文件（properties或二进制格式）
+     * @param ctFileName
+     * @return
+     */
+    public Ciphertext loadCiphertext(String ctFileName) {
+        return Ciphertext.load(ctFileName, bp);
+    }
+
+    /**
+     * 加密 -- 与属性集相关联
+     * @param message
+     * @param messageAttList
+     * @return
+     */
+    public Ciphertext encrypt(Element message, int[] messageAttList) {
+        return encrypt(message, messageAttList, executor);
+    }
+
+    /**
+     * 加密 -- 使用指定的线程池计算密文组件
+     * 已经在线程池任务中调用时（例如批量加密）应传入null，避免在同一个有界线程池中等待子任务
+     * @param message
+     * @param messageAttList
+     * @param executor 为null时串行计算
+     * @return
+     */
+    public Ciphertext encrypt(Element message, int[] messageAttList, ExecutorService executor) {
+        //计算密文组件 E'=EP=Me(g,g)^(ys)
+        Element s = bp.getZr().newRandomElement().getImmutable();  //选取随机Element类整数s∈Zp
+        Element EP = message.duplicate().mul(eggTable.powZn(s)).getImmutable();
+
+        //针对每个密文属性，计算密文组件 Ei=Ti^s，各属性之间互不相关，可以并行计算
+        Element[] Es = new Element[messageAttList.length];
+        ParallelTasks.forEach(executor, messageAttList.length, i -> {
+            int att = messageAttList[i];
+            Es[i] = TTables.powZn(att, this::publicComponent, s).getImmutable();
+        });
+        Map<Integer, Element> E = new LinkedHashMap<Integer, Element>();
+        for (int i = 0; i < messageAttList.length; i++) {
+            E.put(messageAttList[i], Es[i]);
+        }
+        return new Ciphertext(messageAttList.clone(), EP, E);
+    }
+
+    /**
+     * 解密
+     * 先由DecryptionPlan选出最小的满足叶子集合，只为这些叶子属性计算配对，调用者传入的accessTree不会被修改
+     * @param accessTree
+     * @param ct
+     * @param sk
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decrypt(Node[] accessTree, Ciphertext ct, DecryptionKey sk) {
+        return decrypt(AccessPolicy.compile(accessTree), ct, sk);
+    }
+
+    /**
+     * 解密，同一访问策略反复解密时应先编译为AccessPolicy
+     * @param policy
+     * @param ct
+     * @param sk
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public Element decrypt(AccessPolicy policy, Ciphertext ct, DecryptionKey sk) {
+        long start = System.nanoTime();
+        DecryptionPlan plan = policy.acquirePlan();
+        try {
+            if (!plan.plan(ct::hasAttribute)) {
+                Metrics.decrypt(start, plan, 0, false);
+                return null;
+            }
+            int[] attributes = plan.attributes();
+            long pairingStart = System.nanoTime();
+            Map<Integer, Element> shares = new HashMap<Integer, Element>();
+            for (int att : attributes) {
+                Element D = sk.D.get(att);
+                if (D == null) {
+                    throw new IllegalArgumentException("Secret key has no component for attribute " + att);
+                }
+                //e(Ei,Di)=e(g,g)^( qx(0)*s )
+                shares.put(att, backend.pairing(ct.E.get(att), D).getImmutable());
+            }
+            Metrics.phase(MetricsListener.Phase.PAIRING, pairingStart, attributes.length);
+            Element blinding = plan.recover(shares, bp, lagrange);
+            Metrics.decrypt(start, plan, attributes.length, true);
+            return ct.EP.div(blinding);
+        }
+        finally {
+            policy.releasePlan(plan);
+        }
+    }
+
+    private Element publicComponent(int att) {
+        Element Ti = T.apply(att);
+        if (Ti == null) {
+            throw new IllegalArgumentException("Attribute " + att + " is not in the public key");
+        }
+        return Ti;
+    }
+}
@@ -0,0 +1,17 @@
+package kpabe;
+
+/**
+ * KP-ABE运算或密钥、密文文件读写失败
+ * 非受检异常，嵌入到服务中时由调用者处理，不再终止JVM
+ */
+public class KPABEException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public KPABEException(String message) {
+        super(message);
+    }
+
+    public KPABEException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,422 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.io.Closeable;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 可嵌入的KP-ABE服务（进程内API）
+ * 密钥生成、加密、解密请求先进入有界的请求队列，由一个分发线程取出当前积压的请求，
+ * 按批次键（加密按属性集、解密按私钥标识）合并为微批次，交给有界的工作线程池执行。
+ * 同一批次只查找一次解密器、只准备一次属性的预计算表；所有批次共享同一个KPABEEngine和BatchKeyGenerator的缓存。
+ * 密钥生成请求不合并：每个私钥都要重新选取随机多项式，g2的预计算表和1/ti已经由BatchKeyGenerator在所有请求之间共享，
+ * 同一策略的请求合并后没有可复用的工作，反而只能在一个工作线程上串行执行，因此每个请求单独作为一个批次。
+ *
+ * 背压：请求队列满时提交方最多等待submitTimeout，超时则返回以KPABEException失败的Future；
+ * 工作线程池的任务队列也是有界的，任务队列满时分发线程自己执行批次，此时请求在队列中积压，下一轮合并出更大的批次。
+ * 请求处理中的异常通过Future以KPABEException返回。Error同样使批次中尚未完成的请求以KPABEException失败，之后继续抛出：
+ * 在工作线程中由线程池替换该线程，服务继续运行；在分发线程中（任务队列满时）服务停止，排队的请求全部以KPABEException失败。
+ * 每个已接受的请求的Future都一定会完成。
+ */
+public class KPABEService implements Closeable {
+    // open使用的每个微批次最多包含的请求数
+    public static final int DEFAULT_MAX_BATCH_SIZE = 64;
+    // open使用的请求队列满时提交方最多等待的时间（毫秒）
+    public static final long DEFAULT_SUBMIT_TIMEOUT_MILLIS = 1000;
+
+    private final KPABEEngine engine;
+    // 未提供主密钥时为null，不能处理密钥生成请求
+    private final BatchKeyGenerator generator;
+    // 已登记的私钥，以私钥标识为键
+    private final ConcurrentMap<String, RegisteredKey> keys = new ConcurrentHashMap<String, RegisteredKey>();
+
+    private final BlockingQueue<Request<?>> requests;
+    private final ThreadPoolExecutor workers;
+    private final Thread dispatcher;
+    private final int maxBatchSize;
+    private final long submitTimeoutNanos;
+    private volatile boolean closed;
+
+    /**
+     * @param engine 加密和解密使用的引擎
+     * @param generator 密钥生成器，为null时不接受密钥生成请求
+     * @param workerThreads 工作线程数
+     * @param queueCapacity 等待处理的请求数上限
+     * @param maxBatchSize 每个微批次最多包含的请求数
+     * @param submitTimeout 请求队列满时提交方最多等待的时间
+     * @param unit
+     */
+    public KPABEService(KPABEEngine engine, BatchKeyGenerator generator, int workerThreads, int queueCapacity, int maxBatchSize, long submitTimeout, TimeUnit unit) {
+        this.engine = engine;
+        this.generator = generator;
+        this.maxBatchSize = maxBatchSize;
+        this.submitTimeoutNanos = unit.toNanos(submitTimeout);
+        this.requests = new ArrayBlockingQueue<Request<?>>(queueCapacity);
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(workerThreads * 2), new ThreadPoolExecutor.AbortPolicy());
+        this.dispatcher = new Thread(this::dispatch, "kpabe-service-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * 登记私钥，之后可以用私钥标识提交解密请求
+     * @param keyId
+     * @param sk
+     * @param policy 私钥对应的访问策略
+     */
+    public void registerKey(String keyId, DecryptionKey sk, AccessPolicy policy) {
+        keys.put(keyId, new RegisteredKey(engine.newDecryptor(sk), policy));
+    }
+
+    public void unregisterKey(String keyId) {
+        keys.remove(keyId);
+    }
+
+    /**
+     * 为访问策略生成私钥，并以keyId登记
+     * @param keyId
+     * @param policy
+     * @return
+     */
+    public CompletableFuture<DecryptionKey> keygen(String keyId, AccessPolicy policy) {
+        if (generator == null) {
+            return failed(new KPABEException("Service has no master key"));
+        }
+        return submit(new KeygenRequest(keyId, policy));
+    }
+
+    /**
+     * @param message GT上的明文
+     * @param messageAttList
+     * @return
+     */
+    public CompletableFuture<Ciphertext> encrypt(Element message, int[] messageAttList) {
+        return submit(new EncryptRequest(message, messageAttList));
+    }
+
+    /**
+     * @param keyId 已登记的私钥标识
+     * @param ct
+     * @return 明文；访问控制树不被满足时为null
+     */
+    public CompletableFuture<Element> decrypt(String keyId, Ciphertext ct) {
+        return submit(new DecryptRequest(keyId, ct));
+    }
+
+    /**
+     * @return 等待分发的请求数
+     */
+    public int pendingRequests() {
+        return requests.size();
+    }
+
+    /**
+     * 停止接受请求，等待已分发的批次完成，尚未分发的请求以KPABEException失败
+     */
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Request<?>> rest = new ArrayList<Request<?>>();
+        requests.drainTo(rest);
+        for (Request<?> r : rest) {
+            r.future.completeExceptionally(new KPABEException("Service is closed"));
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Request<T> request) {
+        if (closed) {
+            return failed(new KPABEException("Service is closed"));
+        }
+        try {
+            if (!requests.offer(request, submitTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return failed(new KPABEException("Service is overloaded: " + requests.size() + " requests pending"));
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return failed(new KPABEException("Interrupted while submitting request", e));
+        }
+        //close()已经清空请求队列时不会再有人处理这个请求
+        if (closed && requests.remove(request)) {
+            return failed(new KPABEException("Service is closed"));
+        }
+        return request.future;
+    }
+
+    private static <T> CompletableFuture<T> failed(KPABEException e) {
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        future.completeExceptionally(e);
+        return future;
+    }
+
+    // 分发线程：取出当前积压的请求，按批次键合并后交给工作线程池
+    private void dispatch() {
+        List<Request<?>> drained = new ArrayList<Request<?>>();
+        try {
+            dispatch(drained);
+        }
+        catch (Error e) {
+            //分发线程自己执行的批次抛出Error：停止接受请求，已取出但尚未分发的请求和仍在排队的请求全部失败，再继续抛出
+            //已交给工作线程池的批次照常完成
+            closed = true;
+            requests.drainTo(drained);
+            for (Request<?> r : drained) {
+                if (!r.dispatched) {
+                    r.future.completeExceptionally(new KPABEException("Service stopped: " + e, e));
+                }
+            }
+            throw e;
+        }
+    }
+
+    private void dispatch(List<Request<?>> drained) {
+        while (!closed) {
+            try {
+                drained.add(requests.take());
+            }
+            catch (InterruptedException e) {
+                break;
+            }
+            requests.drainTo(drained);
+            Map<Object, List<Request<?>>> batches = new LinkedHashMap<Object, List<Request<?>>>();
+            for (Request<?> r : drained) {
+                List<Request<?>> batch = batches.get(r.batchKey());
+                if (batch == null || batch.size() == maxBatchSize) {
+                    //批次已满时以新的列表替换，已满的批次立即分发
+                    if (batch != null) {
+                        execute(batch);
+                    }
+                    batch = new ArrayList<Request<?>>();
+                    batches.put(r.batchKey(), batch);
+                }
+                batch.add(r);
+            }
+            for (List<Request<?>> batch : batches.values()) {
+                execute(batch);
+            }
+            drained.clear();
+        }
+    }
+
+    private void execute(List<Request<?>> batch) {
+        for (Request<?> r : batch) {
+            r.dispatched = true;
+        }
+        try {
+            workers.execute(() -> process(batch));
+        }
+        catch (RejectedExecutionException e) {
+            if (workers.isShutdown()) {
+                for (Request<?> r : batch) {
+                    r.future.completeExceptionally(new KPABEException("Service is closed", e));
+                }
+            }
+            else {
+                //任务队列已满，由分发线程执行，期间新请求在请求队列中积压
+                process(batch);
+            }
+        }
+    }
+
+    // 同一批次的请求类型和批次键相同，由第一个请求准备共享的上下文
+    // 准备失败或抛出Error时，批次中尚未完成的请求全部失败；已经完成的Future不受影响。Error在批次失败之后继续抛出
+    private void process(List<Request<?>> batch) {
+        try {
+            Object context = batch.get(0).prepare();
+            for (Request<?> r : batch) {
+                try {
+                    r.run(context);
+                }
+                catch (RuntimeException e) {
+                    r.future.completeExceptionally(wrap(e));
+                }
+            }
+        }
+        catch (Exception e) {
+            fail(batch, e);
+        }
+        catch (Error e) {
+            fail(batch, e);
+            throw e;
+        }
+    }
+
+    private static void fail(List<Request<?>> batch, Throwable e) {
+        KPABEException failure = wrap(e);
+        for (Request<?> r : batch) {
+            r.future.completeExceptionally(failure);
+        }
+    }
+
+    private static KPABEException wrap(Throwable e) {
+        return e instanceof KPABEException ? (KPABEException) e : new KPABEException(String.valueOf(e), e);
+    }
+
+    private static final class RegisteredKey {
+        final Decryptor decryptor;
+        final AccessPolicy policy;
+
+        RegisteredKey(Decryptor decryptor, AccessPolicy policy) {
+            this.decryptor = decryptor;
+            this.policy = policy;
+        }
+    }
+
+    private abstract static class Request<T> {
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        // 已交给工作线程池或由分发线程执行，只由分发线程读写
+        boolean dispatched;
+
+        // 批次键相同的请求可以合并为一个批次
+        abstract Object batchKey();
+
+        // 为整个批次准备一次共享的上下文
+        abstract Object prepare();
+
+        abstract void run(Object context);
+    }
+
+    private final class KeygenRequest extends Request<DecryptionKey> {
+        final String keyId;
+        final AccessPolicy policy;
+
+        KeygenRequest(String keyId, AccessPolicy policy) {
+            this.keyId = keyId;
+            this.policy = policy;
+        }
+
+        // 不与其他请求合并，见类注释
+        @Override
+        Object batchKey() {
+            return this;
+        }
+
+        @Override
+        Object prepare() {
+            return null;
+        }
+
+        @Override
+        void run(Object context) {
+            DecryptionKey sk = generator.keygen(policy);
+            registerKey(keyId, sk, policy);
+            future.complete(sk);
+        }
+    }
+
+    private final class EncryptRequest extends Request<Ciphertext> {
+        final Element message;
+        final int[] messageAttList;
+        final String key;
+
+        EncryptRequest(Element message, int[] messageAttList) {
+            this.message = message;
+            this.messageAttList = messageAttList.clone();
+            this.key = "encrypt:" + Arrays.toString(messageAttList);
+        }
+
+        @Override
+        Object batchKey() {
+            return key;
+        }
+
+        @Override
+        Object prepare() {
+            engine.prepareAttributes(messageAttList);
+            return null;
+        }
+
+        @Override
+        void run(Object context) {
+            //已经在工作线程中，单条密文内部串行计算
+            future.complete(engine.encrypt(message, messageAttList, null));
+        }
+    }
+
+    private final class DecryptRequest extends Request<Element> {
+        final String keyId;
+        final Ciphertext ct;
+        final String key;
+
+        DecryptRequest(String keyId, Ciphertext ct) {
+            this.keyId = keyId;
+            this.ct = ct;
+            this.key = "decrypt:" + keyId;
+        }
+
+        @Override
+        Object batchKey() {
+            return key;
+        }
+
+        @Override
+        Object prepare() {
+            RegisteredKey registered = keys.get(keyId);
+            if (registered == null) {
+                throw new KPABEException("Unknown key " + keyId);
+            }
+            return registered;
+        }
+
+        @Override
+        void run(Object context) {
+            RegisteredKey registered = (RegisteredKey) context;
+            future.complete(registered.decryptor.decrypt(registered.policy, ct));
+        }
+    }
+
+    /**
+     * 从文件建立服务，微批次大小为DEFAULT_MAX_BATCH_SIZE，提交等待时间为DEFAULT_SUBMIT_TIMEOUT_MILLIS
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param mskFileName 为null时不接受密钥生成请求
+     * @param workerThreads
+     * @param queueCapacity
+     * @return
+     * @throws KPABEException 读取文件失败
+     */
+    public static KPABEService open(String pairingParametersFileName, String pkFileName, String mskFileName, int workerThreads, int queueCapacity) {
+        return open(pairingParametersFileName, pkFileName, mskFileName, workerThreads, queueCapacity,
+                DEFAULT_MAX_BATCH_SIZE, DEFAULT_SUBMIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 从文件建立服务
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param mskFileName 为null时不接受密钥生成请求
+     * @param workerThreads 工作线程数
+     * @param queueCapacity 等待处理的请求数上限
+     * @param maxBatchSize 每个微批次最多包含的请求数
+     * @param submitTimeout 请求队列满时提交方最多等待的时间
+     * @param unit
+     * @return
+     * @throws KPABEException 读取文件失败
+     */
+    public static KPABEService open(String pairingParametersFileName, String pkFileName, String mskFileName, int workerThreads, int queueCapacity, int maxBatchSize, long submitTimeout, TimeUnit unit) {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);
+        Pairing bp = backend.getPairing();
+        PublicKey pk = PublicKey.load(pkFileName, bp);
+        KPABEEngine engine = new KPABEEngine(backend, pk, PowTableCache.DEFAULT_MEMORY_BUDGET, null);
+        BatchKeyGenerator generator = mskFileName == null ? null : new BatchKeyGenerator(backend, pk, MasterKey.load(mskFileName, bp));
+        return new KPABEService(engine, generator, workerThreads, queueCapacity, maxBatchSize, submitTimeout, unit);
+    }
+}
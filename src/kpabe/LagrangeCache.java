@@ -0,0 +1,124 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 拉格朗日因子缓存
+ * 秘密恢复时目标点固定为x=0，因子Δi(0)只取决于参与恢复的子节点索引集合S，
+ * 因此以S为键缓存整组因子，同一私钥解密多个密文时拉格朗日计算只需做一次。
+ * 缓存按最近最少使用淘汰，容量有上限；缓存的Element都是不可变的，可以被多个线程共享。
+ */
+public class LagrangeCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Pairing bp;
+    private final LinkedHashMap<IndexSet, Element[]> cache;
+
+    public LagrangeCache(Pairing bp) {
+        this(bp, DEFAULT_CAPACITY);
+    }
+
+    public LagrangeCache(Pairing bp, int capacity) {
+        this.bp = bp;
+        this.cache = new LinkedHashMap<IndexSet, Element[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<IndexSet, Element[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * 取得集合S中每个元素的拉格朗日因子Δi(0)，不在缓存中时计算并放入缓存
+     * @param S 子节点索引集合
+     * @return 与S按位置对应的因子，调用者不能修改返回的数组
+     */
+    public Element[] coefficients(int[] S) {
+        IndexSet key = new IndexSet(S);
+        Element[] deltas;
+        synchronized (this) {
+            deltas = cache.get(key);
+        }
+        if (deltas == null) {
+            deltas = compute(S, bp);
+            synchronized (this) {
+                cache.put(new IndexSet(S.clone()), deltas);
+            }
+        }
+        return deltas;
+    }
+
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * 批量计算集合S中每个元素在x=0处的拉格朗日因子
+     * Δi(0)=∏(0-j)/(i-j)（j∈S，j≠i），先分别求出所有分子和分母，
+     * 再用Montgomery批量求逆：分母前缀积只求一次逆，整组只做一次域上的除法。
+     * @param S
+     * @param bp
+     * @return 与S按位置对应的不可变因子
+     */
+    public static Element[] compute(int[] S, Pairing bp) {
+        int n = S.length;
+        Element[] numerators = new Element[n];
+        Element[] denominators = new Element[n];
+        Element diff = bp.getZr().newElement();
+        for (int a = 0; a < n; a++) {
+            Element numerator = bp.getZr().newOneElement();
+            Element denominator = bp.getZr().newOneElement();
+            for (int b = 0; b < n; b++) {
+                if (a != b) {
+                    numerator.mul(diff.set(-S[b]));  //0-xj
+                    denominator.mul(diff.set(S[a] - S[b]));  //xi-xj
+                }
+            }
+            numerators[a] = numerator;
+            denominators[a] = denominator;
+        }
+
+        //prefix[a]=denominators[0]*...*denominators[a-1]
+        Element[] prefix = new Element[n];
+        Element acc = bp.getZr().newOneElement();
+        for (int a = 0; a < n; a++) {
+            prefix[a] = acc.duplicate();
+            acc.mul(denominators[a]);
+        }
+        //acc=1/(denominators[0]*...*denominators[a])，从后往前依次剥离
+        acc.invert();
+        Element[] deltas = new Element[n];
+        for (int a = n - 1; a >= 0; a--) {
+            Element inverse = prefix[a].mul(acc);  //1/denominators[a]
+            acc.mul(denominators[a]);
+            deltas[a] = numerators[a].mul(inverse).getImmutable();
+        }
+        return deltas;
+    }
+
+    // 以子节点索引集合为键，按内容比较
+    private static final class IndexSet {
+        private final int[] indices;
+        private final int hash;
+
+        IndexSet(int[] indices) {
+            this.indices = indices;
+            this.hash = Arrays.hashCode(indices);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof IndexSet && Arrays.equals(indices, ((IndexSet) o).indices);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
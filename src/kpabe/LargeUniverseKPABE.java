@@ -0,0 +1,250 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * 大属性全集模式的KP-ABE
+ * 属性不再是setup时固定的1..U，而是任意字符串；属性x的公钥组件由哈希得到 T(x)=H(x)∈G1，
+ * 因此公钥只有 { g, g2, Y=egg_y }，主密钥只有 { y }，setup的耗时和公钥大小都与属性个数无关。
+ *
+ *   keygen：对每个叶子x选取随机数rx，Dx=g^(qx(0))·H(x)^rx，Rx=g2^rx
+ *   encrypt：E'=EP=M·Y^s，E''=g2^s，对每个属性 Ex=H(x)^s
+ *   decrypt：e(Dx,E'')/e(Ex,Rx)=e(g,g2)^(s·qx(0))，之后与KPABE相同地按访问树做拉格朗日恢复
+ *
+ * 与KPABE相比，私钥每个叶子多一个Rx，密文多一个E''，解密时每个叶子多一次配对（用乘积配对共享最终幂运算）。
+ * keygen/encrypt/decrypt的参数与KPABE相同，访问树仍使用Node；叶子可以用 new Node("dept:finance") 指定字符串属性，
+ * 整数属性按十进制字符串处理。H为随机预言机：SHA-256(标签 || 属性名) 再映射到G1。
+ * keygen和encrypt检查公钥属于大属性全集模式，并在私钥和密文中记录同样的标记，decrypt只检查密文和私钥，不再读取公钥文件。
+ */
+public class LargeUniverseKPABE {
+    private static final Logger LOG = Logger.getLogger(LargeUniverseKPABE.class.getName());
+    private static final byte[] HASH_LABEL = "KPABE-LU-H".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * 初始化 -- 不需要属性全集U
+     * @param pairingParametersFileName
+     * @param pkFileName
+     * @param mskFileName
+     */
+    public static void setup(String pairingParametersFileName, String pkFileName, String mskFileName) {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);
+        Pairing bp = backend.getPairing();
+        Element g = backend.ciphertextGroup().newRandomElement().getImmutable();
+        Element g2 = backend.isSymmetric() ? g : backend.keyGroup().newRandomElement().getImmutable();
+        Element y = bp.getZr().newRandomElement().getImmutable();
+        Element egg_y = backend.pairing(g, g2).powZn(y).getImmutable();  //Y=egg_y=e(g,g2)^y
+
+        Properties pkProp = new Properties();
+        pkProp.setProperty("universe", "large");
+        pkProp.setProperty("g", encode(g));
+        pkProp.setProperty("g2", encode(g2));
+        pkProp.setProperty("egg_y", encode(egg_y));
+        Properties mskProp = new Properties();
+        mskProp.setProperty("y", encode(y));
+
+        KPABE.storePropToFile(mskProp, mskFileName);
+        KPABE.storePropToFile(pkProp, pkFileName);
+        //输出：主密钥文件 msk = { y }，公钥文件 pk = { g, g2, Y }
+    }
+
+    /**
+     * 密钥生成 -- 与访问控制树相关联，访问树不会被修改
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName
+     * @param mskFileName
+     * @param skFileName
+     */
+    public static void keygen(String pairingParametersFileName, Node[] accessTree, String pkFileName, String mskFileName, String skFileName) {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);
+        Pairing bp = backend.getPairing();
+        Properties pkProp = KPABE.loadPropFromFile(pkFileName);
+        checkLargeUniverse(pkProp, pkFileName);
+        ElementPowPreProcessing gTable = decode(backend.ciphertextGroup(), pkProp.getProperty("g")).getElementPowPreProcessing();
+        ElementPowPreProcessing g2Table = decode(backend.keyGroup(), pkProp.getProperty("g2")).getElementPowPreProcessing();
+        Element y = decode(bp.getZr(), KPABE.loadPropFromFile(mskFileName).getProperty("y"));
+
+        //秘密分片保存在临时数组中，不写入accessTree；共享只依赖树的结构，使用按局部编号的访问树
+        Element[] shares = TreeTasks.share(AccessPolicy.compile(number(accessTree, new HashMap<String, Integer>(), new ArrayList<String>())), y, bp, null);
+
+        Properties skProp = new Properties();
+        for (int i = 0; i < accessTree.length; i++) {
+            if (accessTree[i].isLeaf()) {
+                String att = accessTree[i].attributeName();
+                Element r = bp.getZr().newRandomElement().getImmutable();
+                //Dx=g^(qx(0))·H(x)^rx，Rx=g2^rx
+                Element D = gTable.powZn(shares[i]).mul(hash(att, backend.ciphertextGroup()).powZn(r)).getImmutable();
+                Element R = g2Table.powZn(r).getImmutable();
+                skProp.setProperty("D:" + att, encode(D));
+                skProp.setProperty("R:" + att, encode(R));
+            }
+        }
+        skProp.setProperty("universe", "large");
+        KPABE.storePropToFile(skProp, skFileName);
+        //输出：私钥文件 sk = { Dx, Rx } (x∈访问树的叶子属性)
+    }
+
+    /**
+     * 加密 -- 与字符串属性集相关联
+     * @param pairingParametersFileName
+     * @param message
+     * @param messageAttList
+     * @param pkFileName
+     * @param ctFileName
+     */
+    public static void encrypt(String pairingParametersFileName, Element message, String[] messageAttList, String pkFileName, String ctFileName) {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);
+        Pairing bp = backend.getPairing();
+        Properties pkProp = KPABE.loadPropFromFile(pkFileName);
+        checkLargeUniverse(pkProp, pkFileName);
+        Element g2 = decode(backend.keyGroup(), pkProp.getProperty("g2"));
+        Element egg_y = decode(bp.getGT(), pkProp.getProperty("egg_y"));
+
+        Element s = bp.getZr().newRandomElement().getImmutable();
+        Properties ctProp = new Properties();
+        ctProp.setProperty("EP", encode(message.duplicate().mul(egg_y.powZn(s))));  //E'=EP=M·Y^s
+        ctProp.setProperty("E2", encode(g2.powZn(s)));  //E''=g2^s
+        for (String att : messageAttList) {
+            ctProp.setProperty("E:" + att, encode(hash(att, backend.ciphertextGroup()).powZn(s)));  //Ex=H(x)^s
+        }
+        ctProp.setProperty("universe", "large");
+        KPABE.storePropToFile(ctProp, ctFileName);
+        //输出：密文文件 ct = < E'=EP, E'', {Ex}(x∈messageAttList) >
+    }
+
+    /**
+     * 加密 -- 整数属性按十进制字符串处理
+     * @param pairingParametersFileName
+     * @param message
+     * @param messageAttList
+     * @param pkFileName
+     * @param ctFileName
+     */
+    public static void encrypt(String pairingParametersFileName, Element message, int[] messageAttList, String pkFileName, String ctFileName) {
+        String[] atts = new String[messageAttList.length];
+        for (int i = 0; i < messageAttList.length; i++) {
+            atts[i] = Integer.toString(messageAttList[i]);
+        }
+        encrypt(pairingParametersFileName, message, atts, pkFileName, ctFileName);
+    }
+
+    /**
+     * 解密，访问树不会被修改
+     * @param pairingParametersFileName
+     * @param accessTree
+     * @param pkFileName 只为与KPABE.decrypt参数相同而保留，解密不需要公钥，不会读取该文件
+     * @param ctFileName
+     * @param skFileName
+     * @return 明文；访问控制树不被满足时返回null
+     */
+    public static Element decrypt(String pairingParametersFileName, Node[] accessTree, String pkFileName, String ctFileName, String skFileName) {
+        PairingBackend backend = PairingBackend.forParameters(pairingParametersFileName);
+        Pairing bp = backend.getPairing();
+        Properties ctProp = KPABE.loadPropFromFile(ctFileName);
+        checkLargeUniverse(ctProp, ctFileName);
+
+        //为访问树中的属性名分配局部编号，复用按整数属性工作的DecryptionPlan
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> names = new ArrayList<String>();
+        Node[] numbered = number(accessTree, ids, names);
+        Set<Integer> ctIds = new HashSet<Integer>();
+        for (String name : ctProp.stringPropertyNames()) {
+            if (name.startsWith("E:") && ids.containsKey(name.substring(2))) {
+                ctIds.add(ids.get(name.substring(2)));
+            }
+        }
+
+        DecryptionPlan plan = DecryptionPlan.plan(numbered, ctIds.stream().mapToInt(i->i).toArray());
+        if (plan == null) {
+            LOG.fine("The access tree is not satisfied.");
+            return null;
+        }
+
+        Properties skProp = KPABE.loadPropFromFile(skFileName);
+        checkLargeUniverse(skProp, skFileName);
+        Element E2 = decode(backend.keyGroup(), ctProp.getProperty("E2"));
+        Map<Integer, Element> shares = new HashMap<Integer, Element>();
+        for (int id : plan.attributes()) {
+            String att = names.get(id);
+            String DString = skProp.getProperty("D:" + att);
+            if (DString == null) {
+                throw new IllegalArgumentException("Secret key has no component for attribute " + att);
+            }
+            Element D = decode(backend.ciphertextGroup(), DString);
+            Element R = decode(backend.keyGroup(), skProp.getProperty("R:" + att));
+            Element E = decode(backend.ciphertextGroup(), ctProp.getProperty("E:" + att));
+            //e(Dx,E'')·e(Ex^-1,Rx)=e(g,g2)^(s·qx(0))，两个配对共享一次最终幂运算
+            Element share = backend.pairing(new Element[]{D, E.duplicate().invert()}, new Element[]{E2, R});
+            shares.put(id, share.getImmutable());
+        }
+        Element EP = decode(bp.getGT(), ctProp.getProperty("EP"));
+        return EP.div(plan.recover(shares, bp, null));
+    }
+
+    /**
+     * 把叶子的属性名替换为局部编号，得到结构相同的整数属性访问树
+     * @param accessTree
+     * @param ids 属性名到编号的映射，编号从0开始
+     * @param names 按编号排列的属性名
+     * @return
+     */
+    private static Node[] number(Node[] accessTree, Map<String, Integer> ids, List<String> names) {
+        Node[] numbered = new Node[accessTree.length];
+        for (int i = 0; i < accessTree.length; i++) {
+            Node node = accessTree[i];
+            if (!node.isLeaf()) {
+                numbered[i] = new Node(node.gate, node.children);
+                continue;
+            }
+            Integer id = ids.get(node.attributeName());
+            if (id == null) {
+                id = names.size();
+                ids.put(node.attributeName(), id);
+                names.add(node.attributeName());
+            }
+            numbered[i] = new Node(id);
+        }
+        return numbered;
+    }
+
+    /**
+     * 属性哈希 H(x)：SHA-256(标签 || 属性名的UTF-8编码) 映射到群中
+     * @param att
+     * @param group
+     * @return
+     */
+    public static Element hash(String att, Field<?> group) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(HASH_LABEL);
+            byte[] digest = md.digest(att.getBytes(StandardCharsets.UTF_8));
+            return group.newElementFromHash(digest, 0, digest.length).getImmutable();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void checkLargeUniverse(Properties prop, String fileName) {
+        if (!"large".equals(prop.getProperty("universe"))) {
+            throw new IllegalArgumentException(fileName + " is not a large-universe key or ciphertext");
+        }
+    }
+
+    private static String encode(Element e) {
+        return Base64.getEncoder().withoutPadding().encodeToString(e.toBytes());
+    }
+
+    private static Element decode(Field<?> field, String s) {
+        return field.newElementFromBytes(Base64.getDecoder().decode(s)).getImmutable();
+    }
+}
@@ -0,0 +1,300 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存映射、按属性值定址的公钥文件
+ * 属性全集很大（例如10^6个属性）时，pk.properties每次都要整体读入和解码，而加密通常只用到其中几个Ti。
+ * 本文件为每个属性值预留一个定长槽位，Ti位于 槽区起点 + att*(1+元素长度) 处，
+ * 按属性值读取Ti只需一次定址和一次解码，与公钥中其他属性无关。
+ * 新增属性直接写入对应槽位，容量不足时在文件末尾扩展，不重写已有内容：已写入的Ti不会被改写，
+ * 已生成的私钥和引擎中的Ti预计算表都依赖原来的Ti。
+ *
+ * 布局：
+ *   magic "KPPK"(4字节) | 版本(1字节) | 标志(1字节) | 保留(2字节) | G1元素长度(int) | GT元素长度(int) | 容量(int)
+ *   g(G1) | [g2(G2)] | egg_y(GT) | 槽位0 | 槽位1 | ...
+ * 标志位ASYMMETRIC表示公钥来自非对称配对，g之后另有g2；对称配对中g2=g，不写g2。
+ * 每个槽位为 存在标志(1字节) + Ti(G1)。属性值必须为非负整数；单个映射区不超过2GB。
+ * 对映射区的普通读写之间没有happens-before关系，因此读取槽位时持有读锁，写入、扩展、刷新和关闭时持有写锁；
+ * 元素的解码在锁外进行。
+ */
+public class MappedPublicKeyStore implements Closeable {
+    private static final byte[] MAGIC = {'K', 'P', 'P', 'K'};
+    public static final int VERSION = 1;
+    // 标志位：公钥中包含g2
+    public static final int ASYMMETRIC = 1;
+    private static final int HEADER_LENGTH = 20;
+
+    private final Pairing bp;
+    private final RandomAccessFile file;
+    private final int g1Length;
+    private final int slotsOffset;
+    private final int slotLength;
+    private final Element g;
+    private final Element g2;
+    private final Element egg_y;
+
+    // 保护map、capacity和映射区的内容
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 扩容时整体替换
+    private MappedByteBuffer map;
+    private int capacity;
+
+    private MappedPublicKeyStore(Pairing bp, RandomAccessFile file) throws IOException {
+        this.bp = bp;
+        this.file = file;
+        ByteBuffer header = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, HEADER_LENGTH);
+        for (byte b : MAGIC) {
+            if (header.get() != b) {
+                throw new IOException("Not a mapped public key store");
+            }
+        }
+        int version = header.get() & 0xFF;
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapped public key store version " + version);
+        }
+        boolean asymmetric = (header.get() & ASYMMETRIC) != 0;
+        header.position(8);
+        this.g1Length = header.getInt();
+        int gtLength = header.getInt();
+        if (g1Length != bp.getG1().getLengthInBytes() || gtLength != bp.getGT().getLengthInBytes()) {
+            throw new IOException("Mapped public key store was written for different pairing parameters");
+        }
+        int g2Length = asymmetric ? bp.getG2().getLengthInBytes() : 0;
+        this.slotsOffset = HEADER_LENGTH + g1Length + g2Length + gtLength;
+        this.slotLength = 1 + g1Length;
+        remap(header.getInt());
+
+        this.g = bp.getG1().newElementFromBytes(readBytes(map, HEADER_LENGTH, g1Length)).getImmutable();
+        this.g2 = asymmetric ? bp.getG2().newElementFromBytes(readBytes(map, HEADER_LENGTH + g1Length, g2Length)).getImmutable() : g;
+        this.egg_y = bp.getGT().newElementFromBytes(readBytes(map, HEADER_LENGTH + g1Length + g2Length, gtLength)).getImmutable();
+    }
+
+    /**
+     * 新建对称配对的公钥文件，g2=g
+     * @param fileName
+     * @param bp
+     * @param g
+     * @param egg_y
+     * @param capacity 预留的槽位数（属性值上限+1），之后可以自动扩展
+     * @return
+     * @throws IOException
+     */
+    public static MappedPublicKeyStore create(String fileName, Pairing bp, Element g, Element egg_y, int capacity) throws IOException {
+        return create(fileName, bp, g, g, egg_y, capacity);
+    }
+
+    /**
+     * 新建公钥文件
+     * @param fileName
+     * @param bp
+     * @param g
+     * @param g2 私钥所在群G2的生成元，对称配对中g2=g
+     * @param egg_y
+     * @param capacity 预留的槽位数（属性值上限+1），之后可以自动扩展
+     * @return
+     * @throws IOException
+     */
+    public static MappedPublicKeyStore create(String fileName, Pairing bp, Element g, Element g2, Element egg_y, int capacity) throws IOException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must be non-negative: " + capacity);
+        }
+        boolean asymmetric = g2.getField() != g.getField();
+        int g1Length = bp.getG1().getLengthInBytes();
+        int g2Length = asymmetric ? bp.getG2().getLengthInBytes() : 0;
+        int gtLength = bp.getGT().getLengthInBytes();
+        try (RandomAccessFile raf = new RandomAccessFile(fileName, "rw")) {
+            raf.setLength(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH + g1Length + g2Length + gtLength);
+            header.put(MAGIC).put((byte) VERSION).put((byte) (asymmetric ? ASYMMETRIC : 0)).put(new byte[2]);
+            header.putInt(g1Length).putInt(gtLength).putInt(capacity);
+            header.put(g.toBytes());
+            if (asymmetric) {
+                header.put(g2.toBytes());
+            }
+            header.put(egg_y.toBytes());
+            raf.write(header.array());
+            raf.setLength(header.capacity() + (long) capacity * (1 + g1Length));
+        }
+        return open(fileName, bp);
+    }
+
+    /**
+     * 把已解码的公钥写成内存映射公钥文件
+     * @param fileName
+     * @param bp
+     * @param pk
+     * @return
+     * @throws IOException
+     */
+    public static MappedPublicKeyStore create(String fileName, Pairing bp, PublicKey pk) throws IOException {
+        int maxAtt = pk.T.keySet().stream().mapToInt(i->i).max().orElse(0);
+        MappedPublicKeyStore store = create(fileName, bp, pk.g, pk.g2, pk.egg_y, maxAtt + 1);
+        for (Map.Entry<Integer, Element> entry : pk.T.entrySet()) {
+            store.put(entry.getKey(), entry.getValue());
+        }
+        return store;
+    }
+
+    /**
+     * 打开已有的公钥文件，可读可写
+     * @param fileName
+     * @param bp
+     * @return
+     * @throws IOException
+     */
+    public static MappedPublicKeyStore open(String fileName, Pairing bp) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+        try {
+            return new MappedPublicKeyStore(bp, raf);
+        }
+        catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    public Element getG() {
+        return g;
+    }
+
+    // 私钥所在群G2的生成元，对称配对中g2=g
+    public Element getG2() {
+        return g2;
+    }
+
+    public Element getEggY() {
+        return egg_y;
+    }
+
+    public int getCapacity() {
+        lock.readLock().lock();
+        try {
+            return capacity;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 按属性值读取Ti
+     * @param att
+     * @return 不可变的Ti；属性不存在时返回null
+     */
+    public Element get(int att) {
+        byte[] bytes;
+        lock.readLock().lock();
+        try {
+            if (att < 0 || att >= capacity) {
+                return null;
+            }
+            int offset = slotsOffset + att * slotLength;
+            if (map.get(offset) == 0) {
+                return null;
+            }
+            bytes = readBytes(map, offset + 1, g1Length);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return bp.getG1().newElementFromBytes(bytes).getImmutable();
+    }
+
+    /**
+     * 写入属性att的Ti，容量不足时扩展文件；已有的槽位不会被改写，再次写入相同的Ti时不做任何事
+     * @param att 非负属性值
+     * @param T
+     * @throws IOException
+     * @throws IllegalStateException 属性att已有不同的Ti
+     */
+    public void put(int att, Element T) throws IOException {
+        if (att < 0) {
+            throw new IllegalArgumentException("Attribute must be non-negative: " + att);
+        }
+        byte[] bytes = T.toBytes();
+        lock.writeLock().lock();
+        try {
+            if (att >= capacity) {
+                grow(att + 1);
+            }
+            else if (map.get(slotsOffset + att * slotLength) != 0) {
+                if (!Arrays.equals(bytes, readBytes(map, slotsOffset + att * slotLength + 1, g1Length))) {
+                    throw new IllegalStateException("Attribute " + att + " already has a different public key component");
+                }
+                return;
+            }
+            ByteBuffer slot = map.duplicate();
+            slot.position(slotsOffset + att * slotLength + 1);
+            slot.put(bytes);
+            map.put(slotsOffset + att * slotLength, (byte) 1);
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            map.force();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            map.force();
+            file.close();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 至少扩展到minCapacity个槽位，每次至少翻倍以摊薄扩展次数；调用者持有写锁
+    private void grow(int minCapacity) throws IOException {
+        long newCapacity = Math.max(minCapacity, Math.min((long) capacity * 2, Integer.MAX_VALUE));
+        if (slotsOffset + newCapacity * slotLength > Integer.MAX_VALUE) {
+            newCapacity = Math.max(minCapacity, (Integer.MAX_VALUE - slotsOffset) / slotLength);
+            if (slotsOffset + newCapacity * slotLength > Integer.MAX_VALUE) {
+                throw new IOException("Mapped public key store cannot exceed 2GB");
+            }
+        }
+        map.force();
+        file.setLength(slotsOffset + newCapacity * slotLength);
+        ByteBuffer header = ByteBuffer.allocate(4);
+        header.putInt(0, (int) newCapacity);
+        file.getChannel().write(header, 16);
+        remap((int) newCapacity);
+    }
+
+    private void remap(int capacity) throws IOException {
+        this.map = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, slotsOffset + (long) capacity * slotLength);
+        this.capacity = capacity;
+    }
+
+    private static byte[] readBytes(ByteBuffer map, int offset, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer view = map.duplicate();
+        view.position(offset);
+        view.get(bytes);
+        return bytes;
+    }
+}
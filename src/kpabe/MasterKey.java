@@ -0,0 +1,67 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 内存中的系统主密钥 msk = { t1, t2, ..., t|U|, y }
+ */
+public class MasterKey {
+    public final Element y;
+
+    // 属性主密钥 ti，以属性值为键
+    public final Map<Integer, Element> t;
+
+    public MasterKey(Element y, Map<Integer, Element> t) {
+        this.y = y;
+        this.t = Collections.unmodifiableMap(t);
+    }
+
+    /**
+     * 转换为与KPABE.setup写出的msk.properties相同格式的Properties
+     * @return
+     */
+    public Properties toProperties() {
+        Properties mskProp = new Properties();
+        for (Map.Entry<Integer, Element> entry : t.entrySet()) {
+            mskProp.setProperty("t"+entry.getKey(), Base64.getEncoder().withoutPadding().encodeToString(entry.getValue().toBytes()));
+        }
+        mskProp.setProperty("y", Base64.getEncoder().withoutPadding().encodeToString(y.toBytes()));
+        return mskProp;
+    }
+
+    /**
+     * 从msk.properties格式的Properties中解码主密钥
+     * @param mskProp
+     * @param bp
+     * @return
+     */
+    public static MasterKey fromProperties(Properties mskProp, Pairing bp) {
+        Element y = bp.getZr().newElementFromBytes(Base64.getDecoder().decode(mskProp.getProperty("y"))).getImmutable();
+        Map<Integer, Element> t = new HashMap<Integer, Element>();
+        for (String name : mskProp.stringPropertyNames()) {
+            if (name.startsWith("t")) {
+                int att = Integer.parseInt(name.substring(1));
+                t.put(att, bp.getZr().newElementFromBytes(Base64.getDecoder().decode(mskProp.getProperty(name))).getImmutable());
+            }
+        }
+        return new MasterKey(y, t);
+    }
+
+    /**
+     * 读取主密钥文件，支持msk.properties格式和BinaryFormat二进制格式
+     * @param mskFileName
+     * @param bp
+     * @return
+     */
+    public static MasterKey load(String mskFileName, Pairing bp) {
+        byte[] bytes = KPABE.loadBytesFromFile(mskFileName);
+        if (BinaryFormat.isBinary(bytes)) {
+            return BinaryFormat.decodeMasterKey(ByteBuffer.wrap(bytes), bp);
+        }
+        return fromProperties(BinaryFormat.toProperties(bytes), bp);
+    }
+}
@@ -0,0 +1,43 @@
+package kpabe;
+
+/**
+ * 全局度量监听器的注册点
+ * 计时只需要System.nanoTime，与配对和幂运算相比可以忽略；未注册监听器时不调用任何回调。
+ */
+public final class Metrics {
+    private static volatile MetricsListener listener = MetricsListener.NOOP;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param l 为null时恢复为NOOP
+     */
+    public static void setListener(MetricsListener l) {
+        listener = l == null ? MetricsListener.NOOP : l;
+    }
+
+    public static MetricsListener listener() {
+        return listener;
+    }
+
+    public static boolean enabled() {
+        return listener != MetricsListener.NOOP;
+    }
+
+    // 报告自start（System.nanoTime）以来的阶段耗时，未启用度量时不做任何事
+    static void phase(MetricsListener.Phase phase, long start, int count) {
+        MetricsListener l = listener;
+        if (l != MetricsListener.NOOP) {
+            l.phase(phase, System.nanoTime() - start, count);
+        }
+    }
+
+    // 报告一次按计划进行的解密，plan为生成计划后的状态
+    static void decrypt(long start, DecryptionPlan plan, int pairings, boolean satisfied) {
+        MetricsListener l = listener;
+        if (l != MetricsListener.NOOP) {
+            l.decrypt(System.nanoTime() - start, pairings, plan.leavesVisited(), plan.gatesShortCircuited(), satisfied);
+        }
+    }
+}
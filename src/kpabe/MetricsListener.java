@@ -0,0 +1,48 @@
+package kpabe;
+
+/**
+ * 加解密热路径的度量监听器
+ * 各阶段的耗时和一次解密的计数通过回调报告，所有方法默认什么也不做，实现类只需覆盖关心的方法。
+ * 回调在执行运算的线程上同步调用，实现必须是线程安全的并且应尽量轻量。
+ * 通过Metrics.setListener注册，默认为NOOP。
+ */
+public interface MetricsListener {
+    MetricsListener NOOP = new MetricsListener() {
+    };
+
+    /**
+     * 解密过程中的阶段
+     */
+    enum Phase {
+        // 读取密钥或密文文件
+        KEY_LOAD,
+        // 把字节解码为群元素
+        ELEMENT_DECODE,
+        // 计算 e(Ei,Di)
+        PAIRING,
+        // GT上的幂运算 e(g,g)^(q(i)s·Δi)
+        GT_EXPONENTIATION,
+        // 计算或查找拉格朗日因子
+        LAGRANGE
+    }
+
+    /**
+     * 一个阶段完成
+     * @param phase
+     * @param nanos 该阶段的总耗时（纳秒）
+     * @param count 该阶段包含的运算次数，例如配对次数
+     */
+    default void phase(Phase phase, long nanos, int count) {
+    }
+
+    /**
+     * 一次解密完成
+     * @param nanos 总耗时（纳秒），不含读取文件
+     * @param pairings 配对次数
+     * @param leavesVisited 生成解密计划时检查的叶子数
+     * @param gatesShortCircuited 满足门限后跳过了多余可满足子节点的门限门个数
+     * @param satisfied 访问控制树是否被满足
+     */
+    default void decrypt(long nanos, int pairings, int leavesVisited, int gatesShortCircuited, boolean satisfied) {
+    }
+}
@@ -1,3 +1,5 @@
+package kpabe;
+
 import it.unisa.dia.gas.jpbc.Element;
 
 import java.util.Arrays;
@@ -15,6 +17,9 @@ public class Node {
     // 如果是内部节点，此字段null
     public int att;
 
+    // 大属性全集模式（LargeUniverseKPABE）中的字符串属性，为null时使用att
+    public String attName;
+
     // 对应的秘密值
     public Element secretShare;
 
@@ -32,6 +37,16 @@ public class Node {
         this.att = att;
     }
 
+    // 字符串属性叶子节点的构造方法，只用于大属性全集模式
+    public Node(String attName){
+        this.attName = attName;
+    }
+
+    // 叶子节点的属性名：字符串属性，或整数属性的十进制表示
+    public String attributeName() {
+        return attName != null ? attName : Integer.toString(att);
+    }
+
     public boolean isLeaf() {
         return this.children==null ? true : false;
     }
@@ -39,7 +54,7 @@ public class Node {
     @Override
     public String toString() {
         if (this.isLeaf()){
-            return Integer.toString(this.att);
+            return attributeName();
         }
         else {
             return Arrays.toString(this.gate);
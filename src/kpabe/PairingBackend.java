@@ -0,0 +1,76 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.function.UnaryOperator;
+
+/**
+ * 双线性配对后端
+ * KP-ABE的各项运算只依赖这里约定的群角色：公钥和密文（g、Ti、Ei）位于ciphertextGroup，
+ * 私钥（g2、Di）位于keyGroup，配对 e(Ei,Di) 的结果与 egg_y=e(g,g2)^y 位于GT。
+ * 对称配对中两个群相同并且g2=g，公钥、私钥、密文文件与原来完全相同；
+ * 非对称配对中公钥另外保存g2，两个群的元素长度、运算速度都可以不同。
+ * KPABEEngine、Decryptor和BatchKeyGenerator的配对都经由后端计算，Pairing只用于Zr、GT上的运算和元素编解码。
+ * 后端由曲线参数文件的type决定，见forParameters；其他实现可以直接传给上述类的构造方法。
+ */
+public interface PairingBackend {
+
+    /**
+     * @return Zr、GT和各群元素的编解码所用的Pairing实例
+     */
+    Pairing getPairing();
+
+    /**
+     * @return 后端和曲线的描述，例如 "jPBC Type A (symmetric)"
+     */
+    String getName();
+
+    /**
+     * @return G1与G2相同时为true
+     */
+    boolean isSymmetric();
+
+    /**
+     * @return 公钥组件Ti和密文组件Ei所在的群
+     */
+    Field<?> ciphertextGroup();
+
+    /**
+     * @return 私钥组件Di所在的群
+     */
+    Field<?> keyGroup();
+
+    /**
+     * @param E 密文组件，位于ciphertextGroup
+     * @param D 私钥组件，位于keyGroup
+     * @return e(E,D)
+     */
+    Element pairing(Element E, Element D);
+
+    /**
+     * 乘积配对，各项共享最终幂运算
+     * @param E 密文组件
+     * @param D 私钥组件，与E一一对应
+     * @return e(E1,D1)·...·e(En,Dn)
+     */
+    Element pairing(Element[] E, Element[] D);
+
+    /**
+     * 为固定的私钥组件D建立 E -> e(E,D)，同一个D与多个密文配对时使用
+     * 后端可以预先做只与D相关的计算；返回的函数只读，可以被多个线程同时调用
+     * @param D 私钥组件，位于keyGroup
+     * @return 结果为不可变元素
+     */
+    UnaryOperator<Element> keyPairing(Element D);
+
+    /**
+     * 根据曲线参数文件选择后端
+     * @param pairingParametersFileName
+     * @return
+     */
+    static PairingBackend forParameters(String pairingParametersFileName) {
+        return JpbcPairingBackend.load(pairingParametersFileName);
+    }
+}
@@ -0,0 +1,73 @@
+package kpabe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * 把下标区间 [0, n) 上互不相关的群运算分块提交到线程池执行
+ * 每个下标的结果由调用者写入以下标为索引的数组，因此输出顺序与串行执行完全相同。
+ */
+public class ParallelTasks {
+
+    /**
+     * 对 [0, n) 中的每个下标执行body，executor为null或n很小时在当前线程串行执行
+     * @param executor
+     * @param n
+     * @param body
+     */
+    public static void forEach(ExecutorService executor, int n, IntConsumer body) {
+        if (executor == null || n < 2) {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        //每个处理器分到若干块，块太小时提交任务的开销会超过群运算本身
+        int chunks = Math.min(n, Runtime.getRuntime().availableProcessors() * 4);
+        int chunkSize = (n + chunks - 1) / chunks;
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int from = 0; from < n; from += chunkSize) {
+            final int start = from;
+            final int end = Math.min(n, from + chunkSize);
+            futures.add(executor.submit(() -> {
+                for (int i = start; i < end; i++) {
+                    body.accept(i);
+                }
+            }));
+        }
+        await(futures);
+    }
+
+    // 等待所有任务完成，任务中的异常原样抛出
+    static void await(List<? extends Future<?>> futures) {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+        catch (InterruptedException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for parallel group operations", e);
+        }
+        catch (ExecutionException e) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.ElementPowPreProcessing;
+import it.unisa.dia.gas.jpbc.Field;
+import it.unisa.dia.gas.jpbc.Point;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+/**
+ * 固定底数幂运算预计算表的LRU缓存，以属性值为键
+ * jPBC的getElementPowPreProcessing()为底数建立窗口表（窗口k=5），之后每次powZn只需查表相乘，不再做平方。
+ * 每张表占用的内存与群元素长度和Zr阶的比特数成正比，属性全集很大时不能为每个Ti都建表，
+ * 因此按内存预算限制表的数量，超出时淘汰最久未使用的表。
+ */
+public class PowTableCache {
+    // 默认内存预算 64MB
+    public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+    // jPBC默认的窗口大小
+    private static final int WINDOW = 5;
+
+    // 每个底层域元素除数值本身以外的堆开销：包装对象、BigInteger对象和int[]数组的对象头与字段
+    private static final int FIELD_ELEMENT_OVERHEAD = 80;
+    // 曲线点对象本身：对象头、坐标引用、无穷远点标志、所在群的引用
+    private static final int POINT_OVERHEAD = 32;
+
+    private final int maxTables;
+    private final LinkedHashMap<Integer, ElementPowPreProcessing> tables;
+
+    /**
+     * @param memoryBudget 所有预计算表允许占用的内存（字节），为0时不建表
+     * @param tableBytes 单张表的估计大小（字节），参见estimateTableBytes
+     */
+    public PowTableCache(long memoryBudget, long tableBytes) {
+        this.maxTables = (int) Math.min(Integer.MAX_VALUE, memoryBudget / Math.max(1, tableBytes));
+        this.tables = new LinkedHashMap<Integer, ElementPowPreProcessing>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, ElementPowPreProcessing> eldest) {
+                return size() > maxTables;
+            }
+        };
+    }
+
+    /**
+     * 估计某个群上一张预计算表在堆上的大小：(|r|/k + 1) * 2^k 个群元素
+     * 表中每个群元素都是jPBC的堆对象，每个坐标各自持有一个BigInteger，实际占用的内存是序列化长度getLengthInBytes()的数倍，
+     * 因此按元素的对象结构估计
+     * @param group 底数所在的群
+     * @param Zr 指数所在的群
+     * @return
+     */
+    public static long estimateTableBytes(Field<?> group, Field<?> Zr) {
+        long lookups = Zr.getOrder().bitLength() / WINDOW + 1;
+        return lookups * (1L << WINDOW) * estimateElementBytes(group.newElement());
+    }
+
+    /**
+     * 估计一个群元素在堆上的大小，曲线点（包括扩域元素）逐个坐标递归估计
+     * @param e
+     * @return
+     */
+    public static long estimateElementBytes(Element e) {
+        if (e instanceof Point) {
+            Point<?> p = (Point<?>) e;
+            return POINT_OVERHEAD + estimateElementBytes(p.getX()) + estimateElementBytes(p.getY());
+        }
+        //BigInteger的int[]按8字节对齐
+        return FIELD_ELEMENT_OVERHEAD + ((e.getLengthInBytes() + 7) & ~7);
+    }
+
+    public int getMaxTables() {
+        return maxTables;
+    }
+
+    public synchronized int size() {
+        return tables.size();
+    }
+
+    /**
+     * 计算 base^exp，base是属性att对应的固定底数
+     * 预算允许时使用（必要时新建）预计算表，否则退化为普通的powZn
+     * @param att
+     * @param bases 按属性值取得不可变的底数，只在需要建表或不建表时调用
+     * @param exp
+     * @return
+     */
+    public Element powZn(int att, IntFunction<Element> bases, Element exp) {
+        if (maxTables == 0) {
+            return bases.apply(att).powZn(exp);
+        }
+        ElementPowPreProcessing table;
+        synchronized (this) {
+            table = tables.get(att);
+        }
+        if (table == null) {
+            //建表放在锁外进行，并发时同一属性可能被重复建表，结果相同，后放入的覆盖先放入的
+            table = bases.apply(att).getElementPowPreProcessing();
+            synchronized (this) {
+                tables.put(att, table);
+            }
+        }
+        return table.powZn(exp);
+    }
+}
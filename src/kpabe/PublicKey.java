@@ -0,0 +1,94 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+
+/**
+ * 内存中的公钥 pk = { T1, T2, ..., T|U|, Y=egg_y, g, g2 }
+ * 所有群元素均为不可变Element，可以在多个线程之间共享
+ */
+public class PublicKey {
+    public final Element g;
+
+    // 私钥所在群G2的生成元，对称配对中g2=g
+    public final Element g2;
+
+    // Y=egg_y=e(g,g2)^y
+    public final Element egg_y;
+
+    // 公钥组件 Ti=g^ti，以属性值为键
+    public final Map<Integer, Element> T;
+
+    /**
+     * 对称配对的公钥，g2=g
+     * @param g
+     * @param egg_y
+     * @param T
+     */
+    public PublicKey(Element g, Element egg_y, Map<Integer, Element> T) {
+        this(g, g, egg_y, T);
+    }
+
+    public PublicKey(Element g, Element g2, Element egg_y, Map<Integer, Element> T) {
+        this.g = g;
+        this.g2 = g2;
+        this.egg_y = egg_y;
+        this.T = Collections.unmodifiableMap(T);
+    }
+
+    /**
+     * 转换为与KPABE.setup写出的pk.properties相同格式的Properties，对称配对不写g2
+     * @return
+     */
+    public Properties toProperties() {
+        Properties pkProp = new Properties();
+        for (Map.Entry<Integer, Element> entry : T.entrySet()) {
+            pkProp.setProperty("T"+entry.getKey(), Base64.getEncoder().withoutPadding().encodeToString(entry.getValue().toBytes()));
+        }
+        pkProp.setProperty("egg_y", Base64.getEncoder().withoutPadding().encodeToString(egg_y.toBytes()));
+        pkProp.setProperty("g", Base64.getEncoder().withoutPadding().encodeToString(g.toBytes()));
+        if (g2.getField() != g.getField()) {
+            pkProp.setProperty("g2", Base64.getEncoder().withoutPadding().encodeToString(g2.toBytes()));
+        }
+        return pkProp;
+    }
+
+    /**
+     * 从pk.properties格式的Properties中解码公钥
+     * @param pkProp
+     * @param bp
+     * @return
+     */
+    public static PublicKey fromProperties(Properties pkProp, Pairing bp) {
+        Element g = bp.getG1().newElementFromBytes(Base64.getDecoder().decode(pkProp.getProperty("g"))).getImmutable();
+        //对称配对的公钥文件中没有g2，g2=g
+        String g2String = pkProp.getProperty("g2");
+        Element g2 = g2String == null ? g : bp.getG2().newElementFromBytes(Base64.getDecoder().decode(g2String)).getImmutable();
+        Element egg_y = bp.getGT().newElementFromBytes(Base64.getDecoder().decode(pkProp.getProperty("egg_y"))).getImmutable();
+        Map<Integer, Element> T = new HashMap<Integer, Element>();
+        for (String name : pkProp.stringPropertyNames()) {
+            if (name.startsWith("T")) {
+                int att = Integer.parseInt(name.substring(1));
+                T.put(att, bp.getG1().newElementFromBytes(Base64.getDecoder().decode(pkProp.getProperty(name))).getImmutable());
+            }
+        }
+        return new PublicKey(g, g2, egg_y, T);
+    }
+
+    /**
+     * 读取公钥文件，支持pk.properties格式和BinaryFormat二进制格式
+     * @param pkFileName
+     * @param bp
+     * @return
+     */
+    public static PublicKey load(String pkFileName, Pairing bp) {
+        byte[] bytes = KPABE.loadBytesFromFile(pkFileName);
+        if (BinaryFormat.isBinary(bytes)) {
+            return BinaryFormat.decodePublicKey(ByteBuffer.wrap(bytes), bp);
+        }
+        return fromProperties(BinaryFormat.toProperties(bytes), bp);
+    }
+}
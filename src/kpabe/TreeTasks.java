@@ -0,0 +1,164 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntFunction;
+
+/**
+ * 访问控制树的并行求值
+ * 同一个门限门的各个子树互不相关：keygen时各子树的多项式求值、decrypt时各子树的配对与拉格朗日恢复都可以同时进行。
+ * 子树作为ForkJoin任务分叉执行，子树较小时退化为串行递归。
+ * 访问策略只读；所有中间结果写入以节点索引为下标的数组或作为任务返回值，
+ * 因此同一个访问策略可以同时被多个线程使用。
+ */
+public class TreeTasks {
+    // keygen时节点数不超过该值的子树串行共享（只有Zr上的运算，分叉开销相对较大）
+    static final int SHARE_CUTOFF = 32;
+
+    // decrypt时计划叶子数不超过该值的子树串行恢复（每个叶子一次配对，分叉开销相对很小）
+    static final int RECOVER_CUTOFF = 2;
+
+    /**
+     * 并行共享秘密，与KPABE.nodeShare的结果分布相同
+     * @param policy
+     * @param y 根节点要共享的秘密值
+     * @param bp
+     * @param pool 为null时在当前线程串行共享
+     * @return 每个节点的秘密分片q(index)，以节点索引为下标
+     */
+    public static Element[] share(AccessPolicy policy, Element y, Pairing bp, ForkJoinPool pool) {
+        Element[] shares = new Element[policy.size()];
+        int[] size = new int[policy.size()];
+        if (pool == null) {
+            new ShareTask(policy, 0, y, bp, size, shares).shareSerial(0, y);
+            return shares;
+        }
+        subtreeSize(policy, 0, size);
+        pool.invoke(new ShareTask(policy, 0, y, bp, size, shares));
+        return shares;
+    }
+
+    /**
+     * 按解密计划并行恢复根节点的秘密值 e(g,g)^sy
+     * @param plan 已生成的解密计划
+     * @param leafShare 根据叶子属性计算 e(Ei,Di) 的函数，会在多个线程中被调用
+     * @param bp
+     * @param lagrange
+     * @param pool
+     * @return
+     */
+    public static Element recover(DecryptionPlan plan, IntFunction<Element> leafShare, Pairing bp, LagrangeCache lagrange, ForkJoinPool pool) {
+        return pool.invoke(new RecoverTask(plan, 0, leafShare, bp, lagrange));
+    }
+
+    private static int subtreeSize(AccessPolicy policy, int i, int[] size) {
+        size[i] = 1;
+        for (int k = policy.childStart(i); k < policy.childEnd(i); k++) {
+            size[i] += subtreeSize(policy, policy.child(k), size);
+        }
+        return size[i];
+    }
+
+    private static final class ShareTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final AccessPolicy policy;
+        private final int i;
+        private final Element secret;
+        private final Pairing bp;
+        private final int[] size;
+        private final Element[] shares;
+
+        ShareTask(AccessPolicy policy, int i, Element secret, Pairing bp, int[] size, Element[] shares) {
+            this.policy = policy;
+            this.i = i;
+            this.secret = secret;
+            this.bp = bp;
+            this.size = size;
+            this.shares = shares;
+        }
+
+        @Override
+        protected void compute() {
+            if (size[i] <= SHARE_CUTOFF) {
+                shareSerial(i, secret);
+                return;
+            }
+            shares[i] = secret;
+            Element[] coef = KPABE.randomP(policy.threshold(i), secret, bp);
+            int[] children = policy.children(i);
+            Element[] childShares = KPABE.qx(children, coef, bp);
+            ShareTask[] tasks = new ShareTask[children.length];
+            for (int j = 0; j < children.length; j++) {
+                tasks[j] = new ShareTask(policy, children[j], childShares[j], bp, size, shares);
+            }
+            invokeAll(tasks);
+        }
+
+        private void shareSerial(int i, Element secret) {
+            shares[i] = secret;
+            if (!policy.isLeaf(i)) {
+                Element[] coef = KPABE.randomP(policy.threshold(i), secret, bp);
+                int[] children = policy.children(i);
+                Element[] childShares = KPABE.qx(children, coef, bp);
+                for (int j = 0; j < children.length; j++) {
+                    shareSerial(children[j], childShares[j]);
+                }
+            }
+        }
+    }
+
+    private static final class RecoverTask extends RecursiveTask<Element> {
+        private static final long serialVersionUID = 1L;
+
+        private final DecryptionPlan plan;
+        private final int i;
+        private final IntFunction<Element> leafShare;
+        private final Pairing bp;
+        private final LagrangeCache lagrange;
+
+        RecoverTask(DecryptionPlan plan, int i, IntFunction<Element> leafShare, Pairing bp, LagrangeCache lagrange) {
+            this.plan = plan;
+            this.i = i;
+            this.leafShare = leafShare;
+            this.bp = bp;
+            this.lagrange = lagrange;
+        }
+
+        @Override
+        protected Element compute() {
+            if (plan.plannedLeaves(i) <= RECOVER_CUTOFF) {
+                return recoverSerial(i);
+            }
+            int[] validChildren = plan.selectedChildren(i);
+            RecoverTask[] tasks = new RecoverTask[validChildren.length];
+            for (int j = 0; j < validChildren.length; j++) {
+                tasks[j] = new RecoverTask(plan, validChildren[j], leafShare, bp, lagrange);
+            }
+            invokeAll(tasks);
+            Element[] deltas = lagrange.coefficients(validChildren);
+            Element secret = bp.getGT().newOneElement();
+            for (int j = 0; j < validChildren.length; j++) {
+                secret.mul(tasks[j].join().duplicate().powZn(deltas[j]));
+            }
+            return secret.getImmutable();
+        }
+
+        private Element recoverSerial(int i) {
+            if (plan.policy.isLeaf(i)) {
+                return leafShare.apply(plan.policy.att(i));
+            }
+            int[] validChildren = plan.selectedChildren(i);
+            Element[] deltas = lagrange.coefficients(validChildren);
+            Element secret = bp.getGT().newOneElement();
+            for (int j = 0; j < validChildren.length; j++) {
+                secret.mul(recoverSerial(validChildren[j]).duplicate().powZn(deltas[j]));
+            }
+            return secret.getImmutable();
+        }
+    }
+}
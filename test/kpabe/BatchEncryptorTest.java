@@ -0,0 +1,179 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.crypto.AEADBadTagException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * BatchEncryptor的混合模式和纯ABE模式，分别在当前线程串行处理和在线程池中处理：
+ * 每条记录都能还原，记录被篡改、重排、删去或追加时抛出AEADBadTagException，访问树不被满足时返回null。
+ */
+@RunWith(Parameterized.class)
+public class BatchEncryptorTest {
+    private static final int RECORDS = 40;
+    private static final int[] ATTRIBUTES = {1, 2};
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ExecutorService executor;
+    private KPABEEngine engine;
+    private BatchEncryptor serial;
+    private BatchEncryptor pooled;
+    private Decryptor decryptor;
+    private AccessPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        String pk = folder.newFile("pk.properties").getPath();
+        String msk = folder.newFile("msk.properties").getPath();
+        String sk = folder.newFile("sk.properties").getPath();
+        KPABE.setup(params, 3, pk, msk);
+        Node[] accessTree = AccessTrees.threshold(2, 2);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        executor = Executors.newFixedThreadPool(4);
+        engine = new KPABEEngine(params, pk);
+        serial = new BatchEncryptor(engine, null);
+        pooled = new BatchEncryptor(engine, executor);
+        decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+        policy = AccessPolicy.compile(accessTree);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // 第i条记录长度为i，包括一条空记录
+    private static byte[][] records() {
+        byte[][] records = new byte[RECORDS][];
+        for (int i = 0; i < RECORDS; i++) {
+            records[i] = new byte[i];
+            Arrays.fill(records[i], (byte) i);
+        }
+        return records;
+    }
+
+    private static BatchEncryptor.HybridBatch withBodies(BatchEncryptor.HybridBatch batch, byte[][] bodies) {
+        return new BatchEncryptor.HybridBatch(batch.header, bodies, batch.elapsedNanos);
+    }
+
+    @Test
+    public void hybridBatchRoundTrips() throws Exception {
+        byte[][] records = records();
+        for (BatchEncryptor encryptor : new BatchEncryptor[]{serial, pooled}) {
+            BatchEncryptor.HybridBatch batch = encryptor.encryptHybrid(ATTRIBUTES, records);
+            assertEquals(RECORDS, batch.size());
+            assertTrue(batch.recordsPerSecond() > 0);
+            //串行和线程池加密的结果可以互相解密
+            assertArrayEquals(records, serial.decryptHybrid(decryptor, policy, batch));
+            assertArrayEquals(records, pooled.decryptHybrid(decryptor, policy, batch));
+        }
+    }
+
+    @Test
+    public void emptyHybridBatchRoundTrips() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, new byte[0][]);
+        assertEquals(0, pooled.decryptHybrid(decryptor, policy, batch).length);
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void tamperedRecordIsRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, records());
+        batch.bodies[7][0] ^= 1;
+        pooled.decryptHybrid(decryptor, policy, batch);
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void reorderedRecordsAreRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, records());
+        byte[][] bodies = batch.bodies.clone();
+        byte[] swap = bodies[3];
+        bodies[3] = bodies[4];
+        bodies[4] = swap;
+        pooled.decryptHybrid(decryptor, policy, withBodies(batch, bodies));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void droppedLastRecordIsRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, records());
+        pooled.decryptHybrid(decryptor, policy, withBodies(batch, Arrays.copyOf(batch.bodies, RECORDS - 1)));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void droppedFirstRecordIsRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = serial.encryptHybrid(ATTRIBUTES, records());
+        serial.decryptHybrid(decryptor, policy, withBodies(batch, Arrays.copyOfRange(batch.bodies, 1, RECORDS)));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void appendedRecordIsRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, records());
+        byte[][] bodies = Arrays.copyOf(batch.bodies, RECORDS + 1);
+        bodies[RECORDS] = batch.bodies[RECORDS - 1];
+        pooled.decryptHybrid(decryptor, policy, withBodies(batch, bodies));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void recordFromAnotherBatchIsRejected() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(ATTRIBUTES, records());
+        BatchEncryptor.HybridBatch other = pooled.encryptHybrid(ATTRIBUTES, records());
+        byte[][] bodies = batch.bodies.clone();
+        bodies[5] = other.bodies[5];
+        pooled.decryptHybrid(decryptor, policy, withBodies(batch, bodies));
+    }
+
+    @Test
+    public void unsatisfiedHybridBatchReturnsNull() throws Exception {
+        BatchEncryptor.HybridBatch batch = pooled.encryptHybrid(new int[]{1, 3}, records());
+        assertNull(pooled.decryptHybrid(decryptor, policy, batch));
+    }
+
+    @Test
+    public void pureBatchRoundTrips() {
+        Element message = engine.getPairing().getGT().newRandomElement().getImmutable();
+        Element[] messages = new Element[RECORDS];
+        for (int i = 0; i < RECORDS; i++) {
+            //一半记录使用同一明文，检验每条记录各自选取s
+            messages[i] = i % 2 == 0 ? message : engine.getPairing().getGT().newRandomElement().getImmutable();
+        }
+        for (BatchEncryptor encryptor : new BatchEncryptor[]{serial, pooled}) {
+            BatchEncryptor.PureBatch batch = encryptor.encrypt(ATTRIBUTES, messages);
+            assertEquals(RECORDS, batch.size());
+            for (int i = 0; i < RECORDS; i++) {
+                assertTrue("record " + i, messages[i].isEqual(decryptor.decrypt(policy, batch.ciphertexts[i])));
+            }
+            assertFalse(batch.ciphertexts[0].EP.isEqual(batch.ciphertexts[2].EP));
+            assertFalse(batch.ciphertexts[0].E.get(1).isEqual(batch.ciphertexts[2].E.get(1)));
+        }
+    }
+
+    @Test
+    public void unsatisfiedPureBatchDecryptsToNull() {
+        Element[] messages = {engine.getPairing().getGT().newRandomElement().getImmutable()};
+        BatchEncryptor.PureBatch batch = pooled.encrypt(new int[]{2, 3}, messages);
+        assertNull(decryptor.decrypt(policy, batch.ciphertexts[0]));
+    }
+}
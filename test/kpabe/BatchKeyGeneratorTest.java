@@ -0,0 +1,123 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * BatchKeyGenerator生成的私钥（包括generate写出、readKey读回的私钥）与KPABE.keygen生成的私钥解密结果相同
+ */
+@RunWith(Parameterized.class)
+public class BatchKeyGeneratorTest {
+    private static final int U = 6;
+    // 密文属性集：前两个满足 2-of-3 策略，后两个不满足
+    private static final int[][] ATTRIBUTE_SETS = {{1, 2}, {1, 2, 3, 4, 5, 6}, {3}, {4, 5, 6}};
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String pk;
+    private String msk;
+    private Node[] accessTree;
+    private AccessPolicy policy;
+    private KPABEEngine engine;
+    private BatchKeyGenerator generator;
+
+    @Before
+    public void setUp() throws IOException {
+        pk = folder.newFile("pk.properties").getPath();
+        msk = folder.newFile("msk.properties").getPath();
+        KPABE.setup(params, U, pk, msk);
+        accessTree = AccessTrees.threshold(2, 3);
+        policy = AccessPolicy.compile(accessTree);
+        engine = new KPABEEngine(params, pk);
+        generator = new BatchKeyGenerator(params, pk, msk);
+    }
+
+    // 依次用私钥解密每个属性集的密文，返回是否得到原明文
+    private boolean[] decryptAll(DecryptionKey key, Ciphertext[] ciphertexts, Element[] messages) {
+        Decryptor decryptor = engine.newDecryptor(key);
+        boolean[] results = new boolean[ciphertexts.length];
+        for (int i = 0; i < ciphertexts.length; i++) {
+            Element result = decryptor.decrypt(policy, ciphertexts[i]);
+            results[i] = result != null && messages[i].isEqual(result);
+        }
+        return results;
+    }
+
+    @Test
+    public void generatedKeysDecryptLikeKeygenKeys() throws Exception {
+        Ciphertext[] ciphertexts = new Ciphertext[ATTRIBUTE_SETS.length];
+        Element[] messages = new Element[ATTRIBUTE_SETS.length];
+        for (int i = 0; i < ATTRIBUTE_SETS.length; i++) {
+            messages[i] = engine.getPairing().getGT().newRandomElement().getImmutable();
+            ciphertexts[i] = engine.encrypt(messages[i], ATTRIBUTE_SETS[i]);
+        }
+        String sk = folder.newFile("sk.properties").getPath();
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        boolean[] expected = decryptAll(engine.loadDecryptionKey(sk), ciphertexts, messages);
+        assertArrayEquals(new boolean[]{true, true, false, false}, expected);
+
+        assertArrayEquals(expected, decryptAll(generator.keygen(policy), ciphertexts, messages));
+
+        //跨越CHUNK_SIZE，检查分组写出和读回的顺序与数量
+        int users = BatchKeyGenerator.CHUNK_SIZE + 3;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(users, generator.generate(Collections.nCopies(users, policy), out, executor));
+        }
+        finally {
+            executor.shutdown();
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        Set<String> distinct = new HashSet<String>();
+        for (int i = 0; i < users; i++) {
+            DecryptionKey key = BatchKeyGenerator.readKey(in, engine.getPairing());
+            assertNotNull(key);
+            assertEquals(new HashSet<Integer>(Arrays.asList(1, 2, 3)), key.D.keySet());
+            distinct.add(Base64.getEncoder().encodeToString(key.D.get(1).toBytes()));
+            if (i == 0 || i == users - 1) {
+                assertArrayEquals(expected, decryptAll(key, ciphertexts, messages));
+            }
+        }
+        assertNull(BatchKeyGenerator.readKey(in, engine.getPairing()));
+        //每个私钥都重新选取随机多项式
+        assertEquals(users, distinct.size());
+    }
+
+    @Test
+    public void keysAreWrittenInPolicyOrder() throws Exception {
+        List<AccessPolicy> policies = Arrays.asList(policy, AccessPolicy.compile(AccessTrees.threshold(1, 6)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(2, generator.generate(policies, out, null));
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(3, BatchKeyGenerator.readKey(in, engine.getPairing()).D.size());
+        assertEquals(6, BatchKeyGenerator.readKey(in, engine.getPairing()).D.size());
+        assertNull(BatchKeyGenerator.readKey(in, engine.getPairing()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void attributeOutsideTheMasterKeyIsRejected() {
+        generator.keygen(AccessPolicy.compile(AccessTrees.threshold(1, U + 1)));
+    }
+}
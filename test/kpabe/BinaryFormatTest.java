@@ -0,0 +1,227 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+import it.unisa.dia.gas.jpbc.Point;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * pk、msk、sk、ct的BinaryFormat编码和解码：堆内和直接ByteBuffer、压缩和非压缩点形式都能还原出相同的群元素，
+ * 二进制密文比Properties文本文件小，并且KPABE的文件接口可以写出并读回二进制格式。
+ */
+@RunWith(Parameterized.class)
+public class BinaryFormatTest {
+    private static final int U = 6;
+    private static final int[] ATTRIBUTES = {1, 3, 4, 6};
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String pk;
+    private String msk;
+    private String sk;
+    private String ct;
+    private Pairing bp;
+
+    @Before
+    public void setUp() throws Exception {
+        pk = folder.newFile("pk.properties").getPath();
+        msk = folder.newFile("msk.properties").getPath();
+        sk = folder.newFile("sk.properties").getPath();
+        ct = folder.newFile("ct.properties").getPath();
+        bp = PairingBackend.forParameters(params).getPairing();
+        KPABE.setup(params, U, pk, msk);
+        KPABE.keygen(params, accessTree(), pk, msk, sk);
+        KPABE.encrypt(params, randomMessage(), ATTRIBUTES, pk, ct);
+    }
+
+    // 根节点为 2-of-3 门限门，叶子属性1、3，以及 1-of-2 门限门下的叶子属性4、6
+    private static Node[] accessTree() {
+        return new Node[]{
+                new Node(new int[]{2, 3}, new int[]{1, 2, 3}),
+                new Node(1),
+                new Node(3),
+                new Node(new int[]{1, 2}, new int[]{4, 5}),
+                new Node(4),
+                new Node(6)
+        };
+    }
+
+    private Element randomMessage() {
+        return bp.getGT().newRandomElement().getImmutable();
+    }
+
+    private static ByteBuffer direct(byte[] bytes) {
+        ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        buf.flip();
+        return buf;
+    }
+
+    private static void assertSameElements(Map<Integer, Element> expected, Map<Integer, Element> actual) {
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<Integer, Element> entry : expected.entrySet()) {
+            assertTrue("element " + entry.getKey(), entry.getValue().isEqual(actual.get(entry.getKey())));
+        }
+    }
+
+    private static void assertSamePublicKey(PublicKey expected, PublicKey actual) {
+        assertTrue(expected.g.isEqual(actual.g));
+        assertTrue(expected.g2.isEqual(actual.g2));
+        assertTrue(expected.egg_y.isEqual(actual.egg_y));
+        assertSameElements(expected.T, actual.T);
+    }
+
+    private static void assertSameCiphertext(Ciphertext expected, Ciphertext actual) {
+        assertArrayEquals(expected.messageAttList, actual.messageAttList);
+        assertTrue(expected.EP.isEqual(actual.EP));
+        assertSameElements(expected.E, actual.E);
+    }
+
+    @Test
+    public void publicKeyRoundTrips() {
+        PublicKey key = PublicKey.load(pk, bp);
+        for (boolean compressed : new boolean[]{false, true}) {
+            byte[] bytes = BinaryFormat.encodePublicKey(key, compressed);
+            assertTrue(BinaryFormat.isBinary(bytes));
+            assertSamePublicKey(key, BinaryFormat.decodePublicKey(ByteBuffer.wrap(bytes), bp));
+            assertSamePublicKey(key, BinaryFormat.decodePublicKey(direct(bytes), bp));
+        }
+    }
+
+    @Test
+    public void masterKeyRoundTrips() {
+        MasterKey key = MasterKey.load(msk, bp);
+        byte[] bytes = BinaryFormat.encodeMasterKey(key);
+        for (ByteBuffer buf : new ByteBuffer[]{ByteBuffer.wrap(bytes), direct(bytes)}) {
+            MasterKey decoded = BinaryFormat.decodeMasterKey(buf, bp);
+            assertTrue(key.y.isEqual(decoded.y));
+            assertSameElements(key.t, decoded.t);
+        }
+    }
+
+    @Test
+    public void decryptionKeyRoundTrips() {
+        DecryptionKey key = DecryptionKey.load(sk, bp);
+        for (boolean compressed : new boolean[]{false, true}) {
+            byte[] bytes = BinaryFormat.encodeDecryptionKey(key, compressed);
+            assertSameElements(key.D, BinaryFormat.decodeDecryptionKey(ByteBuffer.wrap(bytes), bp).D);
+            assertSameElements(key.D, BinaryFormat.decodeDecryptionKey(direct(bytes), bp).D);
+        }
+    }
+
+    @Test
+    public void ciphertextRoundTrips() {
+        Ciphertext ciphertext = Ciphertext.load(ct, bp);
+        for (boolean compressed : new boolean[]{false, true}) {
+            byte[] bytes = BinaryFormat.encodeCiphertext(ciphertext, compressed);
+            assertSameCiphertext(ciphertext, BinaryFormat.decodeCiphertext(ByteBuffer.wrap(bytes), bp));
+            assertSameCiphertext(ciphertext, BinaryFormat.decodeCiphertext(direct(bytes), bp));
+        }
+    }
+
+    @Test
+    public void decodingStartsAtBufferPosition() {
+        Ciphertext ciphertext = Ciphertext.load(ct, bp);
+        byte[] bytes = BinaryFormat.encodeCiphertext(ciphertext, true);
+        byte[] padded = new byte[bytes.length + 7];
+        System.arraycopy(bytes, 0, padded, 7, bytes.length);
+        ByteBuffer buf = ByteBuffer.wrap(padded);
+        buf.position(7);
+        assertSameCiphertext(ciphertext, BinaryFormat.decodeCiphertext(buf.slice(), bp));
+    }
+
+    @Test
+    public void binaryCiphertextIsSmallerThanProperties() throws IOException {
+        Ciphertext ciphertext = Ciphertext.load(ct, bp);
+        ByteArrayOutputStream properties = new ByteArrayOutputStream();
+        ciphertext.toProperties().store(properties, null);
+        int uncompressed = BinaryFormat.encodeCiphertext(ciphertext, false).length;
+        int compressed = BinaryFormat.encodeCiphertext(ciphertext, true).length;
+        //Base64本身就使长度增加1/3，二进制格式至少缩小25%
+        assertTrue(uncompressed + " vs " + properties.size(), uncompressed * 4 <= properties.size() * 3);
+        //压缩点记录的长度由曲线决定（Type A的G1约为一半），两种编码只在每个Ei记录的长度上不同
+        int n = ciphertext.messageAttList.length;
+        int pointLength = bp.getG1().getLengthInBytes();
+        int compressedLength = ((Point<?>) ciphertext.E.get(ATTRIBUTES[0])).getLengthInBytesCompressed();
+        assertEquals(uncompressed - n * (pointLength - compressedLength), compressed);
+        assertTrue(compressed <= uncompressed);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongContainerTypeIsRejected() {
+        byte[] bytes = BinaryFormat.encodeCiphertext(Ciphertext.load(ct, bp), false);
+        BinaryFormat.decodeDecryptionKey(ByteBuffer.wrap(bytes), bp);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedRecordIsRejected() {
+        byte[] bytes = BinaryFormat.encodeCiphertext(Ciphertext.load(ct, bp), false);
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        BinaryFormat.decodeCiphertext(ByteBuffer.wrap(truncated), bp);
+    }
+
+    @Test
+    public void fileApiWritesAndReadsBinaryFormat() throws Exception {
+        for (KPABE.FileFormat format : new KPABE.FileFormat[]{KPABE.FileFormat.BINARY, KPABE.FileFormat.BINARY_COMPRESSED}) {
+            KPABE.setup(params, U, pk, msk, null, format);
+            KPABE.keygen(params, accessTree(), pk, msk, sk, format);
+            Element message = randomMessage();
+            KPABE.encrypt(params, message, ATTRIBUTES, pk, ct, format);
+            for (String file : new String[]{pk, msk, sk, ct}) {
+                assertTrue(format + " " + file, BinaryFormat.isBinary(Files.readAllBytes(Paths.get(file))));
+            }
+            assertTrue(message.isEqual(KPABE.decrypt(params, accessTree(), pk, ct, sk)));
+            assertEquals(U, PublicKey.load(pk, bp).T.size());
+
+            //并行keygen同样写出二进制私钥
+            ForkJoinPool pool = new ForkJoinPool(2);
+            try {
+                KPABE.keygen(params, accessTree(), pk, msk, sk, pool, format);
+            }
+            finally {
+                pool.shutdown();
+            }
+            assertTrue(BinaryFormat.isBinary(Files.readAllBytes(Paths.get(sk))));
+            assertTrue(message.isEqual(KPABE.decrypt(params, accessTree(), pk, ct, sk)));
+
+            //不被满足的访问树仍返回null
+            KPABE.encrypt(params, message, new int[]{1}, pk, ct, format);
+            assertNull(KPABE.decrypt(params, accessTree(), pk, ct, sk));
+        }
+    }
+
+    @Test
+    public void propertiesAndBinaryFilesCanBeMixed() throws Exception {
+        //公钥、主密钥为Properties文本文件，私钥和密文为二进制格式
+        KPABE.keygen(params, accessTree(), pk, msk, sk, KPABE.FileFormat.BINARY_COMPRESSED);
+        Element message = randomMessage();
+        KPABE.encrypt(params, message, ATTRIBUTES, pk, ct, KPABE.FileFormat.BINARY);
+        assertTrue(message.isEqual(KPABE.decrypt(params, accessTree(), pk, ct, sk)));
+    }
+}
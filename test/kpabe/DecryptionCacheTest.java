@@ -0,0 +1,209 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * DecryptionCache的命中和未命中、按最近最少使用淘汰、存活时间、invalidate和clear，
+ * 被删除的条目清零，以及修改过Ei的密文不会命中原密文的条目。
+ */
+@RunWith(Parameterized.class)
+public class DecryptionCacheTest {
+    private static final int[] ATTRIBUTES = {1, 2};
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KPABEEngine engine;
+    private Decryptor decryptor;
+    private AccessPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        String pk = folder.newFile("pk.properties").getPath();
+        String msk = folder.newFile("msk.properties").getPath();
+        String sk = folder.newFile("sk.properties").getPath();
+        KPABE.setup(params, 3, pk, msk);
+        Node[] accessTree = AccessTrees.threshold(2, 2);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        engine = new KPABEEngine(params, pk);
+        decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+        policy = AccessPolicy.compile(accessTree);
+    }
+
+    private Element randomMessage() {
+        return engine.getPairing().getGT().newRandomElement().getImmutable();
+    }
+
+    private DecryptionCache cache(int capacity, long ttl, TimeUnit unit) {
+        return new DecryptionCache(engine.getPairing(), capacity, ttl, unit);
+    }
+
+    private static boolean isZero(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Test
+    public void hitReturnsSameMessageAsMiss() {
+        DecryptionCache cache = cache(8, 0, TimeUnit.SECONDS);
+        Element message = randomMessage();
+        Ciphertext ct = engine.encrypt(message, ATTRIBUTES);
+        assertTrue(message.isEqual(cache.decrypt("alice", decryptor, policy, ct)));
+        assertTrue(message.isEqual(cache.decrypt("alice", decryptor, policy, ct)));
+        assertTrue(message.isEqual(cache.decrypt("alice", decryptor, policy, ct)));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+        assertEquals(2.0 / 3, cache.hitRate(), 1e-9);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void unsatisfiedResultIsNotCached() {
+        DecryptionCache cache = cache(8, 0, TimeUnit.SECONDS);
+        Ciphertext ct = engine.encrypt(randomMessage(), new int[]{1, 3});
+        assertNull(cache.decrypt("alice", decryptor, policy, ct));
+        assertNull(cache.decrypt("alice", decryptor, policy, ct));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void editedComponentDoesNotHit() {
+        DecryptionCache cache = cache(8, 0, TimeUnit.SECONDS);
+        Element message = randomMessage();
+        Ciphertext ct = engine.encrypt(message, ATTRIBUTES);
+        cache.decrypt("alice", decryptor, policy, ct);
+        //EP和属性列表不变，只替换E1
+        Map<Integer, Element> E = new LinkedHashMap<Integer, Element>(ct.E);
+        E.put(1, engine.encrypt(message, ATTRIBUTES).E.get(1));
+        Ciphertext edited = new Ciphertext(ct.messageAttList, ct.EP, E);
+        assertFalse(Arrays.equals(DecryptionCache.ciphertextId(ct), DecryptionCache.ciphertextId(edited)));
+        assertFalse(message.isEqual(cache.decrypt("alice", decryptor, policy, edited)));
+        assertEquals(0, cache.hitCount());
+        assertEquals(2, cache.missCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedEntryIsEvictedAndZeroed() {
+        DecryptionCache cache = cache(2, 0, TimeUnit.SECONDS);
+        Ciphertext ct1 = engine.encrypt(randomMessage(), ATTRIBUTES);
+        Ciphertext ct2 = engine.encrypt(randomMessage(), ATTRIBUTES);
+        Ciphertext ct3 = engine.encrypt(randomMessage(), ATTRIBUTES);
+        cache.decrypt("alice", decryptor, policy, ct1);
+        cache.decrypt("alice", decryptor, policy, ct2);
+        //访问ct1之后，ct2成为最近最少使用的条目
+        cache.decrypt("alice", decryptor, policy, ct1);
+        byte[] ct2Bytes = cache.entryBytes().get(0);
+        cache.decrypt("alice", decryptor, policy, ct3);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertTrue(isZero(ct2Bytes));
+
+        long misses = cache.missCount();
+        cache.decrypt("alice", decryptor, policy, ct1);
+        assertEquals(misses, cache.missCount());
+        cache.decrypt("alice", decryptor, policy, ct2);
+        assertEquals(misses + 1, cache.missCount());
+        assertEquals(2, cache.evictionCount());
+    }
+
+    @Test
+    public void expiredEntryIsRemovedAndZeroed() throws InterruptedException {
+        DecryptionCache cache = cache(8, 50, TimeUnit.MILLISECONDS);
+        Element message = randomMessage();
+        Ciphertext ct = engine.encrypt(message, ATTRIBUTES);
+        cache.decrypt("alice", decryptor, policy, ct);
+        byte[] bytes = cache.entryBytes().get(0);
+        Thread.sleep(120);
+        cache.purgeExpired();
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.expirationCount());
+        assertTrue(isZero(bytes));
+        //过期之后重新解密并缓存
+        assertTrue(message.isEqual(cache.decrypt("alice", decryptor, policy, ct)));
+        assertEquals(0, cache.hitCount());
+        assertEquals(2, cache.missCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void expiredEntryIsNotReturnedOnLookup() throws InterruptedException {
+        DecryptionCache cache = cache(8, 50, TimeUnit.MILLISECONDS);
+        Ciphertext ct = engine.encrypt(randomMessage(), ATTRIBUTES);
+        cache.decrypt("alice", decryptor, policy, ct);
+        Thread.sleep(120);
+        cache.decrypt("alice", decryptor, policy, ct);
+        assertEquals(0, cache.hitCount());
+        assertEquals(1, cache.expirationCount());
+    }
+
+    @Test
+    public void invalidateRemovesOnlyThatKey() {
+        DecryptionCache cache = cache(8, 0, TimeUnit.SECONDS);
+        Ciphertext ct = engine.encrypt(randomMessage(), ATTRIBUTES);
+        cache.decrypt("alice", decryptor, policy, ct);
+        cache.decrypt("bob", decryptor, policy, ct);
+        byte[] aliceBytes = cache.entryBytes().get(0);
+        cache.invalidate("alice");
+        assertEquals(1, cache.size());
+        assertTrue(isZero(aliceBytes));
+        assertFalse(isZero(cache.entryBytes().get(0)));
+        cache.decrypt("bob", decryptor, policy, ct);
+        assertEquals(1, cache.hitCount());
+        cache.decrypt("alice", decryptor, policy, ct);
+        assertEquals(1, cache.hitCount());
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    public void clearZeroesEveryEntry() {
+        DecryptionCache cache = cache(8, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 4; i++) {
+            cache.decrypt("alice", decryptor, policy, engine.encrypt(randomMessage(), ATTRIBUTES));
+        }
+        List<byte[]> entries = cache.entryBytes();
+        assertEquals(4, entries.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        for (byte[] bytes : entries) {
+            assertTrue(isZero(bytes));
+        }
+        //clear不计入淘汰和过期
+        assertEquals(0, cache.evictionCount());
+        assertEquals(0, cache.expirationCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroCapacityIsRejected() {
+        cache(0, 0, TimeUnit.SECONDS);
+    }
+}
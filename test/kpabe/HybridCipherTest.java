@@ -0,0 +1,215 @@
+package kpabe;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import javax.crypto.AEADBadTagException;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * HybridCipher的流式加密和解密：块边界附近的各种明文长度都能还原，
+ * 篡改、重排、截断、修改块大小、追加数据都抛出文档中说明的异常，访问树不被满足时返回false并且不输出数据。
+ */
+@RunWith(Parameterized.class)
+public class HybridCipherTest {
+    private static final int CHUNK_SIZE = 16;
+    private static final int TAG_LENGTH = 16;
+    // 每块：是否最后一块(1字节) | 密文长度(int)
+    private static final int CHUNK_HEADER = 5;
+    private static final int[] ATTRIBUTES = {1, 2};
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KPABEEngine engine;
+    private HybridCipher cipher;
+    private Decryptor decryptor;
+    private AccessPolicy policy;
+
+    @Before
+    public void setUp() throws Exception {
+        String pk = folder.newFile("pk.properties").getPath();
+        String msk = folder.newFile("msk.properties").getPath();
+        String sk = folder.newFile("sk.properties").getPath();
+        KPABE.setup(params, 3, pk, msk);
+        Node[] accessTree = AccessTrees.threshold(2, 2);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        engine = new KPABEEngine(params, pk);
+        cipher = new HybridCipher(engine, CHUNK_SIZE);
+        decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+        policy = AccessPolicy.compile(accessTree);
+    }
+
+    private static byte[] randomBytes(int n) {
+        byte[] bytes = new byte[n];
+        new Random(n).nextBytes(bytes);
+        return bytes;
+    }
+
+    private byte[] encrypt(byte[] data, int[] atts) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cipher.encrypt(atts, Channels.newChannel(new ByteArrayInputStream(data)), Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] ct) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(cipher.decrypt(decryptor, policy, Channels.newChannel(new ByteArrayInputStream(ct)), Channels.newChannel(out)));
+        return out.toByteArray();
+    }
+
+    // 块大小字段的位置：头部长度(int) | 头部 之后
+    private static int chunkSizeOffset(byte[] ct) {
+        return 4 + ByteBuffer.wrap(ct).getInt(0);
+    }
+
+    // 第index块（含块头）的起始位置，前面的块都是满块
+    private static int chunkOffset(byte[] ct, int index) {
+        return chunkSizeOffset(ct) + 4 + index * (CHUNK_HEADER + CHUNK_SIZE + TAG_LENGTH);
+    }
+
+    @Test
+    public void roundTripsAroundChunkBoundaries() throws Exception {
+        for (int n : new int[]{0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1, 2 * CHUNK_SIZE, 2 * CHUNK_SIZE + 1}) {
+            byte[] data = randomBytes(n);
+            byte[] ct = encrypt(data, ATTRIBUTES);
+            //空输入也写出一个空的最后一块
+            int chunks = Math.max(1, (n + CHUNK_SIZE - 1) / CHUNK_SIZE);
+            assertEquals("length " + n, chunkSizeOffset(ct) + 4 + chunks * (CHUNK_HEADER + TAG_LENGTH) + n, ct.length);
+            assertArrayEquals("length " + n, data, decrypt(ct));
+        }
+    }
+
+    @Test
+    public void decryptUsesChunkSizeFromStream() throws Exception {
+        byte[] data = randomBytes(3 * CHUNK_SIZE + 5);
+        byte[] ct = encrypt(data, ATTRIBUTES);
+        cipher = new HybridCipher(engine, HybridCipher.DEFAULT_CHUNK_SIZE);
+        assertArrayEquals(data, decrypt(ct));
+    }
+
+    @Test
+    public void cachedDecryptRoundTrips() throws Exception {
+        byte[] data = randomBytes(2 * CHUNK_SIZE + 3);
+        byte[] ct = encrypt(data, ATTRIBUTES);
+        DecryptionCache cache = new DecryptionCache(engine.getPairing(), 16, 1, TimeUnit.MINUTES);
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertTrue(cipher.decrypt(cache, "alice", decryptor, policy, Channels.newChannel(new ByteArrayInputStream(ct)), Channels.newChannel(out)));
+            assertArrayEquals(data, out.toByteArray());
+        }
+        assertEquals(1, cache.hitCount());
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void flippedCiphertextByteIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE), ATTRIBUTES);
+        ct[chunkOffset(ct, 1) + CHUNK_HEADER + 3] ^= 1;
+        decrypt(ct);
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void swappedChunksAreRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE + 1), ATTRIBUTES);
+        int first = chunkOffset(ct, 0);
+        int second = chunkOffset(ct, 1);
+        int length = second - first;
+        byte[] chunk = Arrays.copyOfRange(ct, first, second);
+        System.arraycopy(ct, second, ct, first, length);
+        System.arraycopy(chunk, 0, ct, second, length);
+        decrypt(ct);
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void droppedMiddleChunkIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE + 1), ATTRIBUTES);
+        int first = chunkOffset(ct, 0);
+        int second = chunkOffset(ct, 1);
+        byte[] dropped = new byte[ct.length - (second - first)];
+        System.arraycopy(ct, 0, dropped, 0, first);
+        System.arraycopy(ct, second, dropped, first, ct.length - second);
+        decrypt(dropped);
+    }
+
+    @Test(expected = EOFException.class)
+    public void truncatedLastChunkIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE + 5), ATTRIBUTES);
+        decrypt(Arrays.copyOf(ct, ct.length - 3));
+    }
+
+    @Test(expected = EOFException.class)
+    public void missingLastChunkIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE + 5), ATTRIBUTES);
+        decrypt(Arrays.copyOf(ct, chunkOffset(ct, 2)));
+    }
+
+    @Test(expected = AEADBadTagException.class)
+    public void editedChunkSizeIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE), ATTRIBUTES);
+        ByteBuffer.wrap(ct).putInt(chunkSizeOffset(ct), CHUNK_SIZE + 1);
+        decrypt(ct);
+    }
+
+    @Test
+    public void invalidChunkSizeIsRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(CHUNK_SIZE), ATTRIBUTES);
+        for (int size : new int[]{0, -1, HybridCipher.MAX_CHUNK_SIZE + 1}) {
+            ByteBuffer.wrap(ct).putInt(chunkSizeOffset(ct), size);
+            try {
+                decrypt(ct);
+                fail("chunk size " + size);
+            }
+            catch (IOException e) {
+                assertEquals("Invalid chunk size " + size, e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void trailingBytesAreRejected() throws Exception {
+        byte[] ct = encrypt(randomBytes(CHUNK_SIZE + 1), ATTRIBUTES);
+        try {
+            decrypt(Arrays.copyOf(ct, ct.length + 1));
+            fail();
+        }
+        catch (IOException e) {
+            assertEquals("Trailing data after the last chunk", e.getMessage());
+        }
+    }
+
+    @Test
+    public void unsatisfiedPolicyReturnsFalseWithoutOutput() throws Exception {
+        byte[] ct = encrypt(randomBytes(2 * CHUNK_SIZE), new int[]{1, 3});
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(cipher.decrypt(decryptor, policy, Channels.newChannel(new ByteArrayInputStream(ct)), Channels.newChannel(out)));
+        assertEquals(0, out.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroChunkSizeIsRejected() {
+        new HybridCipher(engine, 0);
+    }
+}
@@ -0,0 +1,298 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * KPABEService的请求处理、背压和关闭：
+ * 工作线程池的任务队列满时由分发线程执行批次，close()完成每个待处理请求的Future，
+ * 未登记的私钥以KPABEException失败，访问树不被满足时结果为null，同一用户的并发密钥生成不合并，
+ * Error使批次失败后继续抛出。
+ * 测试用的引擎在加密时记录执行线程，第一个属性为BLOCK时等待gate打开，为FAIL时抛出Error。
+ */
+public class KPABEServiceTest {
+    private static final String DISPATCHER = "kpabe-service-dispatcher";
+    private static final int U = 5;
+    private static final int BLOCK = 4;
+    private static final int FAIL = 5;
+    private static final long TIMEOUT = 30;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final CountDownLatch gate = new CountDownLatch(1);
+    private final Semaphore blocked = new Semaphore(0);
+    private final Map<String, String> threads = new ConcurrentHashMap<String, String>();
+    // 继续抛出的Error最终到达线程的默认处理器，以执行线程名为键记录
+    private final Map<String, Throwable> uncaught = new ConcurrentHashMap<String, Throwable>();
+    private Thread.UncaughtExceptionHandler defaultHandler;
+
+    private PairingBackend backend;
+    private PublicKey pk;
+    private MasterKey msk;
+    private AccessPolicy policy;
+    private Element message;
+    private KPABEService service;
+
+    private final class HookedEngine extends KPABEEngine {
+        HookedEngine() {
+            super(backend, pk, PowTableCache.DEFAULT_MEMORY_BUDGET, null);
+        }
+
+        @Override
+        public Ciphertext encrypt(Element message, int[] messageAttList, ExecutorService executor) {
+            threads.put(Arrays.toString(messageAttList), Thread.currentThread().getName());
+            if (messageAttList[0] == BLOCK) {
+                blocked.release();
+                awaitGate();
+            }
+            if (messageAttList[0] == FAIL) {
+                throw new AssertionError("injected error");
+            }
+            return super.encrypt(message, messageAttList, executor);
+        }
+    }
+
+    // close()会中断分发线程，等待期间的中断推迟到gate打开之后
+    private void awaitGate() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                gate.await();
+                break;
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> uncaught.put(t.getName(), e));
+        String pkFile = folder.newFile("pk.properties").getPath();
+        String mskFile = folder.newFile("msk.properties").getPath();
+        KPABE.setup("a.properties", U, pkFile, mskFile);
+        backend = PairingBackend.forParameters("a.properties");
+        pk = PublicKey.load(pkFile, backend.getPairing());
+        msk = MasterKey.load(mskFile, backend.getPairing());
+        policy = AccessPolicy.compile(AccessTrees.threshold(2, 3));
+        message = backend.getPairing().getGT().newRandomElement().getImmutable();
+    }
+
+    @After
+    public void tearDown() {
+        gate.countDown();
+        if (service != null) {
+            service.close();
+        }
+        Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+    }
+
+    // 等待某个线程因Error终止
+    private Throwable awaitUncaught(String threadName) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT);
+        while (!uncaught.containsKey(threadName) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return uncaught.get(threadName);
+    }
+
+    private KPABEService open(int workerThreads, int queueCapacity, long submitTimeoutMillis) {
+        service = new KPABEService(new HookedEngine(), new BatchKeyGenerator(backend, pk, msk),
+                workerThreads, queueCapacity, KPABEService.DEFAULT_MAX_BATCH_SIZE, submitTimeoutMillis, TimeUnit.MILLISECONDS);
+        return service;
+    }
+
+    private static Throwable failure(CompletableFuture<?> future) throws InterruptedException, TimeoutException {
+        try {
+            future.get(TIMEOUT, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+            return null;
+        }
+        catch (ExecutionException e) {
+            assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof KPABEException);
+            return e.getCause();
+        }
+    }
+
+    // 一个工作线程执行阻塞的批次，任务队列（容量2）被两个批次填满
+    private List<CompletableFuture<Ciphertext>> occupyWorker() throws InterruptedException {
+        List<CompletableFuture<Ciphertext>> futures = new ArrayList<CompletableFuture<Ciphertext>>();
+        futures.add(service.encrypt(message, new int[]{BLOCK}));
+        assertTrue(blocked.tryAcquire(TIMEOUT, TimeUnit.SECONDS));
+        futures.add(service.encrypt(message, new int[]{1}));
+        futures.add(service.encrypt(message, new int[]{2}));
+        return futures;
+    }
+
+    @Test
+    public void fullWorkerQueueRunsBatchOnDispatcher() throws Exception {
+        open(1, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        List<CompletableFuture<Ciphertext>> queued = occupyWorker();
+        //不同属性集是不同的批次，任务队列已满，由分发线程执行
+        Ciphertext ct = service.encrypt(message, new int[]{3}).get(TIMEOUT, TimeUnit.SECONDS);
+        assertArrayEquals(new int[]{3}, ct.messageAttList);
+        assertEquals(DISPATCHER, threads.get("[3]"));
+        for (CompletableFuture<Ciphertext> f : queued) {
+            assertFalse(f.isDone());
+        }
+        gate.countDown();
+        for (CompletableFuture<Ciphertext> f : queued) {
+            assertNotNull(f.get(TIMEOUT, TimeUnit.SECONDS));
+        }
+        assertNotEquals(DISPATCHER, threads.get("[1]"));
+        assertNotEquals(DISPATCHER, threads.get("[2]"));
+    }
+
+    @Test
+    public void closeCompletesEveryPendingFuture() throws Exception {
+        open(1, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        List<CompletableFuture<Ciphertext>> futures = occupyWorker();
+        //分发线程执行阻塞的批次，之后的请求留在请求队列中
+        futures.add(service.encrypt(message, new int[]{BLOCK, 1}));
+        assertTrue(blocked.tryAcquire(TIMEOUT, TimeUnit.SECONDS));
+        futures.add(service.encrypt(message, new int[]{3}));
+        futures.add(service.encrypt(message, new int[]{1, 2}));
+        assertEquals(2, service.pendingRequests());
+
+        Thread closer = new Thread(service::close);
+        closer.start();
+        Thread.sleep(100);
+        gate.countDown();
+        closer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        assertFalse(closer.isAlive());
+
+        for (CompletableFuture<Ciphertext> f : futures) {
+            assertTrue(f.isDone());
+        }
+        //已分发的批次正常完成，仍在请求队列中的请求失败
+        for (CompletableFuture<Ciphertext> f : futures.subList(0, 4)) {
+            assertNotNull(f.get());
+        }
+        for (CompletableFuture<Ciphertext> f : futures.subList(4, 6)) {
+            assertEquals("Service is closed", failure(f).getMessage());
+        }
+        assertEquals("Service is closed", failure(service.encrypt(message, new int[]{1})).getMessage());
+    }
+
+    @Test
+    public void fullRequestQueueRejectsAfterTimeout() throws Exception {
+        open(1, 1, 20);
+        occupyWorker();
+        service.encrypt(message, new int[]{BLOCK, 1});
+        assertTrue(blocked.tryAcquire(TIMEOUT, TimeUnit.SECONDS));
+        CompletableFuture<Ciphertext> waiting = service.encrypt(message, new int[]{3});
+        Throwable overloaded = failure(service.encrypt(message, new int[]{1, 2}));
+        assertTrue(overloaded.getMessage(), overloaded.getMessage().startsWith("Service is overloaded"));
+        gate.countDown();
+        assertNotNull(waiting.get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void keygenThenDecrypt() throws Exception {
+        open(2, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        assertNotNull(service.keygen("alice", policy).get(TIMEOUT, TimeUnit.SECONDS));
+        Ciphertext ct = service.encrypt(message, new int[]{1, 3}).get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(message.isEqual(service.decrypt("alice", ct).get(TIMEOUT, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void unsatisfiedPolicyDecryptsToNull() throws Exception {
+        open(2, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        service.keygen("alice", policy).get(TIMEOUT, TimeUnit.SECONDS);
+        Ciphertext ct = service.encrypt(message, new int[]{1}).get(TIMEOUT, TimeUnit.SECONDS);
+        assertNull(service.decrypt("alice", ct).get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void unknownKeyFails() throws Exception {
+        open(2, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        Ciphertext ct = service.encrypt(message, new int[]{1, 2}).get(TIMEOUT, TimeUnit.SECONDS);
+        assertEquals("Unknown key nobody", failure(service.decrypt("nobody", ct)).getMessage());
+        //注销之后同样失败
+        service.keygen("alice", policy).get(TIMEOUT, TimeUnit.SECONDS);
+        service.unregisterKey("alice");
+        assertEquals("Unknown key alice", failure(service.decrypt("alice", ct)).getMessage());
+    }
+
+    @Test
+    public void keygenWithoutMasterKeyFails() throws Exception {
+        service = new KPABEService(new HookedEngine(), null, 1, 16, KPABEService.DEFAULT_MAX_BATCH_SIZE, 1, TimeUnit.SECONDS);
+        assertEquals("Service has no master key", failure(service.keygen("alice", policy)).getMessage());
+    }
+
+    @Test
+    public void concurrentKeygenForSameUserIsNotCoalesced() throws Exception {
+        open(4, 64, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        int n = 8;
+        ExecutorService clients = Executors.newFixedThreadPool(n);
+        try {
+            List<Future<CompletableFuture<DecryptionKey>>> submitted = new ArrayList<Future<CompletableFuture<DecryptionKey>>>();
+            for (int i = 0; i < n; i++) {
+                submitted.add(clients.submit(() -> service.keygen("alice", policy)));
+            }
+            List<DecryptionKey> keys = new ArrayList<DecryptionKey>();
+            for (Future<CompletableFuture<DecryptionKey>> f : submitted) {
+                keys.add(f.get().get(TIMEOUT, TimeUnit.SECONDS));
+            }
+            //每个请求都重新选取随机多项式，得到不同的私钥
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    assertNotSame(keys.get(i), keys.get(j));
+                    assertFalse(keys.get(i).D.get(1).isEqual(keys.get(j).D.get(1)));
+                }
+            }
+        }
+        finally {
+            clients.shutdown();
+        }
+        //最后登记的私钥可以解密
+        Ciphertext ct = service.encrypt(message, new int[]{2, 3}).get(TIMEOUT, TimeUnit.SECONDS);
+        assertTrue(message.isEqual(service.decrypt("alice", ct).get(TIMEOUT, TimeUnit.SECONDS)));
+    }
+
+    @Test
+    public void errorOnWorkerFailsBatchAndServiceContinues() throws Exception {
+        open(1, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        Throwable e = failure(service.encrypt(message, new int[]{FAIL}));
+        assertTrue(e.getCause() instanceof AssertionError);
+        //Error在批次失败之后继续抛出，线程池替换终止的工作线程
+        assertSame(e.getCause(), awaitUncaught(threads.get("[5]")));
+        assertNotNull(service.encrypt(message, new int[]{1}).get(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void errorOnDispatcherStopsService() throws Exception {
+        open(1, 16, KPABEService.DEFAULT_SUBMIT_TIMEOUT_MILLIS);
+        List<CompletableFuture<Ciphertext>> queued = occupyWorker();
+        Throwable e = failure(service.encrypt(message, new int[]{FAIL, 1}));
+        assertTrue(e.getCause() instanceof AssertionError);
+        assertEquals(DISPATCHER, threads.get("[5, 1]"));
+        assertSame(e.getCause(), awaitUncaught(DISPATCHER));
+        //服务已停止：提交时被拒绝，或者已进入请求队列的请求由分发线程在退出前置为失败
+        String stopped = failure(service.encrypt(message, new int[]{1})).getMessage();
+        assertTrue(stopped, stopped.equals("Service is closed") || stopped.startsWith("Service stopped"));
+        //已交给工作线程池的批次不受影响
+        gate.countDown();
+        for (CompletableFuture<Ciphertext> f : queued) {
+            assertNotNull(f.get(TIMEOUT, TimeUnit.SECONDS));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * setup、keygen、encrypt、decrypt在对称配对（a.properties）和非对称配对（Type F）上的完整流程，
+ * 分别检验访问树被满足时解密得到原明文、不被满足时返回null。
+ * Type F参数文件在运行时由JpbcPairingBackend生成，见TestCurves。
+ * 只有使用真实的jPBC jar运行时，这些测试才覆盖真实的Type A/F曲线，见README。
+ */
+@RunWith(Parameterized.class)
+public class KPABETest {
+    private static final int U = 5;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String pk;
+    private String msk;
+    private String sk;
+    private String ct;
+    private PairingBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        pk = folder.newFile("pk.properties").getPath();
+        msk = folder.newFile("msk.properties").getPath();
+        sk = folder.newFile("sk.properties").getPath();
+        ct = folder.newFile("ct.properties").getPath();
+        backend = PairingBackend.forParameters(params);
+        KPABE.setup(params, U, pk, msk);
+    }
+
+    // 根节点为 2-of-3 门限门，叶子属性1、2，以及 1-of-2 门限门下的叶子属性3、4
+    private static Node[] accessTree() {
+        return new Node[]{
+                new Node(new int[]{2, 3}, new int[]{1, 2, 3}),
+                new Node(1),
+                new Node(2),
+                new Node(new int[]{1, 2}, new int[]{4, 5}),
+                new Node(3),
+                new Node(4)
+        };
+    }
+
+    private Element randomMessage() {
+        return backend.getPairing().getGT().newRandomElement().getImmutable();
+    }
+
+    @Test
+    public void pairingIsBilinear() {
+        Element g = backend.ciphertextGroup().newRandomElement().getImmutable();
+        Element h = backend.keyGroup().newRandomElement().getImmutable();
+        Element a = backend.getPairing().getZr().newRandomElement().getImmutable();
+        Element b = backend.getPairing().getZr().newRandomElement().getImmutable();
+        //e(g^a,h^b)=e(g,h)^(ab)，并且e(g,h)不是GT的单位元
+        Element expected = backend.pairing(g, h).powZn(a.mul(b));
+        assertTrue(expected.isEqual(backend.pairing(g.powZn(a), h.powZn(b))));
+        assertFalse(backend.pairing(g, h).isOne());
+    }
+
+    @Test
+    public void fileApiDecryptsWhenSatisfied() throws Exception {
+        Node[] accessTree = accessTree();
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        Element message = randomMessage();
+        KPABE.encrypt(params, message, new int[]{1, 4}, pk, ct);
+        Element result = KPABE.decrypt(params, accessTree, pk, ct, sk);
+        assertNotNull(result);
+        assertTrue(message.isEqual(result));
+    }
+
+    @Test
+    public void fileApiRejectsUnsatisfied() throws Exception {
+        Node[] accessTree = accessTree();
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        KPABE.encrypt(params, randomMessage(), new int[]{3, 4, 5}, pk, ct);
+        assertNull(KPABE.decrypt(params, accessTree, pk, ct, sk));
+    }
+
+    @Test
+    public void engineDecryptsWhenSatisfied() {
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        BatchKeyGenerator generator = new BatchKeyGenerator(params, pk, msk);
+        AccessPolicy policy = AccessPolicy.compile(accessTree());
+        Decryptor decryptor = engine.newDecryptor(generator.keygen(policy));
+        Element message = randomMessage();
+        Ciphertext ciphertext = engine.encrypt(message, new int[]{2, 3, 5});
+        assertTrue(message.isEqual(decryptor.decrypt(policy, ciphertext)));
+        assertTrue(message.isEqual(decryptor.decryptMultiPairing(policy, ciphertext)));
+        assertTrue(message.isEqual(engine.decrypt(policy, ciphertext, generator.keygen(policy))));
+    }
+
+    @Test
+    public void engineRejectsUnsatisfied() {
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        BatchKeyGenerator generator = new BatchKeyGenerator(params, pk, msk);
+        AccessPolicy policy = AccessPolicy.compile(accessTree());
+        DecryptionKey key = generator.keygen(policy);
+        Decryptor decryptor = engine.newDecryptor(key);
+        Ciphertext ciphertext = engine.encrypt(randomMessage(), new int[]{1, 5});
+        assertNull(decryptor.decrypt(policy, ciphertext));
+        assertNull(decryptor.decryptMultiPairing(policy, ciphertext));
+        assertNull(engine.decrypt(policy, ciphertext, key));
+    }
+
+    @Test
+    public void stringLeavesAreRejected() throws Exception {
+        Node[] accessTree = accessTree();
+        accessTree[2] = new Node("dept:finance");
+        try {
+            KPABE.keygen(params, accessTree, pk, msk, sk);
+            fail("String leaf accepted by KPABE.keygen");
+        }
+        catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("dept:finance"));
+        }
+        try {
+            AccessPolicy.compile(accessTree);
+            fail("String leaf accepted by AccessPolicy.compile");
+        }
+        catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("LargeUniverseKPABE"));
+        }
+    }
+
+    @Test
+    public void keysAreInterchangeableBetweenFileApiAndEngine() throws Exception {
+        Node[] accessTree = accessTree();
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        KPABEEngine engine = new KPABEEngine(params, pk);
+        Element message = randomMessage();
+        Ciphertext ciphertext = engine.encrypt(message, new int[]{1, 2});
+        Decryptor decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+        assertTrue(message.isEqual(decryptor.decrypt(AccessPolicy.compile(accessTree), ciphertext)));
+    }
+}
@@ -0,0 +1,140 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+/**
+ * 大属性全集KP-ABE在对称配对（a.properties）和非对称配对（Type F）上的完整流程，
+ * 使用字符串属性检验访问树被满足时解密得到原明文、不被满足时返回null，
+ * 以及不是大属性全集模式的公钥和密文被拒绝。
+ */
+@RunWith(Parameterized.class)
+public class LargeUniverseKPABETest {
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String pk;
+    private String msk;
+    private String sk;
+    private String ct;
+    private PairingBackend backend;
+
+    @Before
+    public void setUp() throws IOException {
+        pk = folder.newFile("pk.properties").getPath();
+        msk = folder.newFile("msk.properties").getPath();
+        sk = folder.newFile("sk.properties").getPath();
+        ct = folder.newFile("ct.properties").getPath();
+        backend = PairingBackend.forParameters(params);
+        LargeUniverseKPABE.setup(params, pk, msk);
+    }
+
+    // 根节点为 2-of-3 门限门，叶子 "dept:finance"、"role:auditor"，以及 1-of-2 门限门下的叶子 42、"role:admin"
+    private static Node[] accessTree() {
+        return new Node[]{
+                new Node(new int[]{2, 3}, new int[]{1, 2, 3}),
+                new Node("dept:finance"),
+                new Node("role:auditor"),
+                new Node(new int[]{1, 2}, new int[]{4, 5}),
+                new Node(42),
+                new Node("role:admin")
+        };
+    }
+
+    private Element randomMessage() {
+        return backend.getPairing().getGT().newRandomElement().getImmutable();
+    }
+
+    private Element roundTrip(Element message, String... attributes) {
+        Node[] accessTree = accessTree();
+        LargeUniverseKPABE.keygen(params, accessTree, pk, msk, sk);
+        LargeUniverseKPABE.encrypt(params, message, attributes, pk, ct);
+        return LargeUniverseKPABE.decrypt(params, accessTree, pk, ct, sk);
+    }
+
+    @Test
+    public void satisfiedTreeDecryptsToMessage() {
+        Element message = randomMessage();
+        assertTrue(message.isEqual(roundTrip(message, "dept:finance", "role:admin")));
+        assertTrue(message.isEqual(roundTrip(message, "dept:finance", "role:auditor", "location:berlin")));
+        assertTrue(message.isEqual(roundTrip(message, "role:auditor", "42")));
+    }
+
+    @Test
+    public void unsatisfiedTreeReturnsNull() {
+        Element message = randomMessage();
+        assertNull(roundTrip(message, "dept:finance"));
+        assertNull(roundTrip(message, "role:admin", "42"));
+        //属性名区分大小写，整数属性42和字符串"042"不同
+        assertNull(roundTrip(message, "Dept:Finance", "role:auditor", "042"));
+    }
+
+    @Test
+    public void integerAttributesAreDecimalStrings() {
+        Element message = randomMessage();
+        Node[] accessTree = accessTree();
+        LargeUniverseKPABE.keygen(params, accessTree, pk, msk, sk);
+        LargeUniverseKPABE.encrypt(params, message, new int[]{42}, pk, ct);
+        assertNull(LargeUniverseKPABE.decrypt(params, accessTree, pk, ct, sk));
+        LargeUniverseKPABE.encrypt(params, message, new String[]{"dept:finance", "42"}, pk, ct);
+        assertTrue(message.isEqual(LargeUniverseKPABE.decrypt(params, accessTree, pk, ct, sk)));
+    }
+
+    @Test
+    public void decryptDoesNotReadPublicKey() {
+        Element message = randomMessage();
+        Node[] accessTree = accessTree();
+        LargeUniverseKPABE.keygen(params, accessTree, pk, msk, sk);
+        LargeUniverseKPABE.encrypt(params, message, new String[]{"dept:finance", "role:auditor"}, pk, ct);
+        String missing = folder.getRoot().getPath() + "/missing.properties";
+        assertTrue(message.isEqual(LargeUniverseKPABE.decrypt(params, accessTree, missing, ct, sk)));
+    }
+
+    @Test
+    public void hashIsDeterministicPerAttribute() {
+        Element a = LargeUniverseKPABE.hash("dept:finance", backend.ciphertextGroup());
+        assertTrue(a.isEqual(LargeUniverseKPABE.hash("dept:finance", backend.ciphertextGroup())));
+        assertFalse(a.isEqual(LargeUniverseKPABE.hash("dept:sales", backend.ciphertextGroup())));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void integerUniversePublicKeyIsRejectedByKeygen() throws Exception {
+        KPABE.setup(params, 5, pk, msk);
+        LargeUniverseKPABE.keygen(params, accessTree(), pk, msk, sk);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void integerUniversePublicKeyIsRejectedByEncrypt() {
+        KPABE.setup(params, 5, pk, msk);
+        LargeUniverseKPABE.encrypt(params, randomMessage(), new String[]{"dept:finance"}, pk, ct);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void integerUniverseCiphertextIsRejectedByDecrypt() throws Exception {
+        Node[] accessTree = accessTree();
+        LargeUniverseKPABE.keygen(params, accessTree, pk, msk, sk);
+        String intPk = folder.newFile("int-pk.properties").getPath();
+        String intMsk = folder.newFile("int-msk.properties").getPath();
+        KPABE.setup(params, 5, intPk, intMsk);
+        KPABE.encrypt(params, randomMessage(), new int[]{1, 2}, intPk, ct);
+        LargeUniverseKPABE.decrypt(params, accessTree, pk, ct, sk);
+    }
+}
@@ -0,0 +1,174 @@
+package kpabe;
+
+import it.unisa.dia.gas.jpbc.Element;
+import it.unisa.dia.gas.jpbc.Pairing;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * MappedPublicKeyStore的新建、读取、写入、扩展以及关闭后重新打开，
+ * 对称配对和非对称配对（保存g2）的公钥都能还原，并且可以直接用于加密。
+ */
+@RunWith(Parameterized.class)
+public class MappedPublicKeyStoreTest {
+    private static final int U = 5;
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> parameters() throws IOException {
+        return TestCurves.parameters();
+    }
+
+    @Parameterized.Parameter
+    public String params;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String pk;
+    private String msk;
+    private String store;
+    private PairingBackend backend;
+    private Pairing bp;
+    private PublicKey publicKey;
+
+    @Before
+    public void setUp() throws IOException {
+        pk = folder.newFile("pk.properties").getPath();
+        msk = folder.newFile("msk.properties").getPath();
+        store = folder.newFile("pk.map").getPath();
+        backend = PairingBackend.forParameters(params);
+        bp = backend.getPairing();
+        KPABE.setup(params, U, pk, msk);
+        publicKey = PublicKey.load(pk, bp);
+    }
+
+    private Element randomT() {
+        return bp.getG1().newRandomElement().getImmutable();
+    }
+
+    private void assertMatchesPublicKey(MappedPublicKeyStore s) {
+        assertTrue(publicKey.g.isEqual(s.getG()));
+        assertTrue(publicKey.g2.isEqual(s.getG2()));
+        assertTrue(publicKey.egg_y.isEqual(s.getEggY()));
+        for (Map.Entry<Integer, Element> entry : publicKey.T.entrySet()) {
+            assertTrue("T" + entry.getKey(), entry.getValue().isEqual(s.get(entry.getKey())));
+        }
+    }
+
+    @Test
+    public void createFromPublicKey() throws IOException {
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            assertMatchesPublicKey(s);
+            assertEquals(U + 1, s.getCapacity());
+            //属性从1开始，槽位0为空；超出范围的属性同样返回null
+            assertNull(s.get(0));
+            assertNull(s.get(-1));
+            assertNull(s.get(U + 1));
+            assertNull(s.get(Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void putThenGet() throws IOException {
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey.g, publicKey.g2, publicKey.egg_y, 4)) {
+            assertNull(s.get(2));
+            Element T = randomT();
+            s.put(2, T);
+            assertTrue(T.isEqual(s.get(2)));
+            assertNull(s.get(1));
+            assertNull(s.get(3));
+        }
+    }
+
+    @Test
+    public void existingSlotIsNotRewritten() throws IOException {
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            Element T1 = publicKey.T.get(1);
+            //写入相同的Ti不做任何事
+            s.put(1, T1);
+            try {
+                s.put(1, randomT());
+                fail();
+            }
+            catch (IllegalStateException e) {
+                assertTrue(T1.isEqual(s.get(1)));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeAttributeIsRejected() throws IOException {
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            s.put(-1, randomT());
+        }
+    }
+
+    @Test
+    public void growsPastCapacity() throws IOException {
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            //容量U+1=6，扩展时至少翻倍
+            Element T = randomT();
+            s.put(10, T);
+            assertEquals(12, s.getCapacity());
+            //超过翻倍后的容量时直接扩展到所需的槽位数
+            Element far = randomT();
+            s.put(100, far);
+            assertEquals(101, s.getCapacity());
+            assertTrue(T.isEqual(s.get(10)));
+            assertTrue(far.isEqual(s.get(100)));
+            assertNull(s.get(11));
+            assertMatchesPublicKey(s);
+        }
+    }
+
+    @Test
+    public void reopensAfterClose() throws IOException {
+        Element T = randomT();
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            s.put(40, T);
+        }
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.open(store, bp)) {
+            assertEquals(41, s.getCapacity());
+            assertMatchesPublicKey(s);
+            assertTrue(T.isEqual(s.get(40)));
+            assertNull(s.get(39));
+            //重新打开后仍然可写
+            Element more = randomT();
+            s.put(50, more);
+            assertTrue(more.isEqual(s.get(50)));
+        }
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.open(store, bp)) {
+            assertEquals(82, s.getCapacity());
+            assertTrue(T.isEqual(s.get(40)));
+        }
+    }
+
+    @Test
+    public void engineOverStoreEncryptsForFileKeys() throws Exception {
+        String sk = folder.newFile("sk.properties").getPath();
+        Node[] accessTree = AccessTrees.threshold(2, 3);
+        KPABE.keygen(params, accessTree, pk, msk, sk);
+        try (MappedPublicKeyStore s = MappedPublicKeyStore.create(store, bp, publicKey)) {
+            KPABEEngine engine = new KPABEEngine(backend, s, PowTableCache.DEFAULT_MEMORY_BUDGET, null);
+            Element message = bp.getGT().newRandomElement().getImmutable();
+            Ciphertext ct = engine.encrypt(message, new int[]{1, 3});
+            Decryptor decryptor = engine.newDecryptor(engine.loadDecryptionKey(sk));
+            assertTrue(message.isEqual(decryptor.decrypt(accessTree, ct)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void otherFilesAreRejected() throws IOException {
+        MappedPublicKeyStore.open(pk, bp).close();
+    }
+}
@@ -0,0 +1,26 @@
+package kpabe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * 参数化测试使用的曲线参数文件：对称配对a.properties，以及运行时生成的非对称Type F (BN) 参数文件
+ */
+final class TestCurves {
+    private static String typeF;
+
+    private TestCurves() {
+    }
+
+    static synchronized Collection<Object[]> parameters() throws IOException {
+        if (typeF == null) {
+            File f = File.createTempFile("kpabe-f", ".properties");
+            f.deleteOnExit();
+            JpbcPairingBackend.generateTypeF(160, f.getPath());
+            typeF = f.getPath();
+        }
+        return Arrays.asList(new Object[][]{{"a.properties"}, {typeF}});
+    }
+}